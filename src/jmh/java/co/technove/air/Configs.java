@@ -0,0 +1,44 @@
+package co.technove.air;
+
+import java.nio.charset.StandardCharsets;
+
+final class Configs {
+    private Configs() {
+    }
+
+    // 20 values per section, cycling through every value type with a comment on each
+    static byte[] generate(int keys) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < keys; i++) {
+            if (i % 20 == 0) {
+                builder.append("# section ").append(i / 20).append('\n');
+                builder.append("[section").append(i / 20).append("]\n");
+            }
+            builder.append("  # comment for key").append(i).append('\n');
+            builder.append("  key").append(i).append(" = ");
+            switch (i % 5) {
+                case 0:
+                    builder.append(i);
+                    break;
+                case 1:
+                    builder.append(i).append(".5");
+                    break;
+                case 2:
+                    builder.append(i % 2 == 0);
+                    break;
+                case 3:
+                    builder.append("\"value").append(i).append('"');
+                    break;
+                default:
+                    builder.append("[\n    1,\n    2,\n    3,\n  ]");
+                    break;
+            }
+            builder.append('\n');
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static String section(int key) {
+        return "section" + key / 20;
+    }
+}
@@ -0,0 +1,129 @@
+package co.technove.air;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LookupBenchmark {
+    private static final int MISSES = 1000;
+    private static final int KEYS = 1000;
+    private static final List<Integer> DEFAULT_LIST = Arrays.asList(1, 2, 3);
+    private static final int[] EMPTY_INTS = new int[0];
+
+    private final String[] missingKeys = new String[MISSES];
+    private byte[] contents;
+
+    private AIR air;
+    private AIR missAir;
+    private ConfigKey<Integer> intKey;
+    private AIRSnapshot snapshot;
+    private LayeredAIR layered;
+
+    @Setup
+    public void setup() throws IOException {
+        this.contents = Configs.generate(KEYS);
+        this.air = AIR.load(ByteBuffer.wrap(this.contents));
+        this.intKey = this.air.key("section0.key0", ValueType.INT, 0);
+        this.air.setList(ValueType.INT, "section0.written", Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8));
+        this.snapshot = this.air.freeze();
+        // three layers where the middle one overrides every key, lookups should cost the same as a single layer
+        this.layered = new LayeredAIR(this.air, AIR.load(ByteBuffer.wrap(Configs.generate(KEYS)), LoadOption.COMPACT), new AIR());
+        for (int i = 0; i < MISSES; i++) {
+            this.missingKeys[i] = Configs.section(i) + ".missing" + i;
+        }
+    }
+
+    // a miss inserts the default, so every batch of misses needs a configuration that does not have them yet
+    @Setup(Level.Invocation)
+    public void setupMisses() throws IOException {
+        this.missAir = AIR.load(ByteBuffer.wrap(this.contents));
+    }
+
+    @Benchmark
+    public int getIntHit() {
+        return this.air.getInt("section0.key0", 0);
+    }
+
+    // an int read as a long, which is widened without allocating
+    @Benchmark
+    public long getLongOfIntHit() {
+        return this.air.getLong("section0.key0", 0);
+    }
+
+    @Benchmark
+    public String getStringHit() {
+        return this.air.getString("section0.key3", "");
+    }
+
+    @Benchmark
+    public List<Integer> getListHit() throws IOException {
+        return this.air.getList("section0.key4", ValueType.INT, Collections.emptyList());
+    }
+
+    // a list written through setList, which is stored as an array rather than as a node per element
+    @Benchmark
+    public List<Integer> getListAfterSetList() throws IOException {
+        return this.air.getList("section0.written", ValueType.INT, Collections.emptyList());
+    }
+
+    @Benchmark
+    public ImmutableArray.OfInt getIntArrayHit() {
+        return this.air.getIntArray("section0.key4", EMPTY_INTS);
+    }
+
+    @Benchmark
+    public int getIntKeyHit() {
+        return this.intKey.getInt();
+    }
+
+    @Benchmark
+    public int getIntSnapshotHit() {
+        return this.snapshot.getInt("section0.key0", 0);
+    }
+
+    @Benchmark
+    public int getIntLayeredHit() {
+        return this.layered.getInt("section0.key0", 0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MISSES)
+    public void getIntMiss(Blackhole blackhole) {
+        for (String key : this.missingKeys) {
+            blackhole.consume(this.missAir.getInt(key, 1));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MISSES)
+    public void getStringMiss(Blackhole blackhole) {
+        for (String key : this.missingKeys) {
+            blackhole.consume(this.missAir.getString(key, "default"));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MISSES)
+    public void getListMiss(Blackhole blackhole) throws IOException {
+        for (String key : this.missingKeys) {
+            blackhole.consume(this.missAir.getList(key, ValueType.INT, DEFAULT_LIST));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package co.technove.air;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int keys;
+
+    private byte[] contents;
+
+    @Setup
+    public void setup() {
+        this.contents = Configs.generate(this.keys);
+    }
+
+    @Benchmark
+    public AIR parseStream() throws IOException {
+        return new AIR(new ByteArrayInputStream(this.contents));
+    }
+
+    @Benchmark
+    public AIR loadBuffer() throws IOException {
+        return AIR.load(ByteBuffer.wrap(this.contents));
+    }
+
+    @Benchmark
+    public AIR loadLazy() throws IOException {
+        return AIR.load(ByteBuffer.wrap(this.contents), LoadOption.LAZY);
+    }
+
+    @Benchmark
+    public AIR loadParallel() throws IOException {
+        return AIR.load(ByteBuffer.wrap(this.contents), LoadOption.PARALLEL);
+    }
+}
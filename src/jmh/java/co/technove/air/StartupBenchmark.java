@@ -0,0 +1,61 @@
+package co.technove.air;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of the first few loads in a fresh JVM, comparing parsing the text against loading the binary cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 5)
+@Fork(10)
+public class StartupBenchmark {
+    @Param({"1000", "100000"})
+    public int keys;
+
+    private Path directory;
+    private Path path;
+
+    @Setup
+    public void setup() throws IOException {
+        this.directory = Files.createTempDirectory("air");
+        this.path = this.directory.resolve("config.air");
+        Files.write(this.path, Configs.generate(this.keys));
+        AIR.load(this.path, LoadOption.CACHE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.path.resolveSibling("config.air.bin"));
+        Files.deleteIfExists(this.path);
+        Files.deleteIfExists(this.directory);
+    }
+
+    @Benchmark
+    public AIR loadText() throws IOException {
+        return AIR.load(this.path);
+    }
+
+    @Benchmark
+    public AIR loadCached() throws IOException {
+        return AIR.load(this.path, LoadOption.CACHE);
+    }
+}
@@ -0,0 +1,61 @@
+package co.technove.air;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WriteBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int keys;
+
+    @Param({"100"})
+    public int listSize;
+
+    private AIR air;
+    private List<Integer> list;
+
+    @Setup
+    public void setup() throws IOException {
+        this.air = AIR.load(ByteBuffer.wrap(Configs.generate(this.keys)));
+        this.list = new ArrayList<>();
+        for (int i = 0; i < this.listSize; i++) {
+            this.list.add(i);
+        }
+    }
+
+    @Benchmark
+    public AIR setList() {
+        this.air.setList(ValueType.INT, "section0.list", this.list);
+        return this.air;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream saveStream() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        this.air.save(stream);
+        return stream;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream saveChannel() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        this.air.save(Channels.newChannel(stream));
+        return stream;
+    }
+}
@@ -1,16 +1,62 @@
 package co.technove.air;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 // todo probably needs lists eventually
 public class AIR {
+    // files at least this large are memory mapped instead of read onto the heap, unless they are loaded lazily
+    private static final int MAP_THRESHOLD = 64 * 1024;
+
     private final Map<String, Section> sections = new LinkedHashMap<>();
 
-    private static class ManualObject {
+    // bumped whenever nodes are replaced, so that handles know to resolve again
+    int generation;
+
+    // null after an edit until the snapshot is read again, see #snapshot()
+    private volatile AIRSnapshot snapshot = AIRSnapshot.EMPTY;
+
+    // whether anything changed since this was loaded or last saved, and the file it was loaded from or saved to
+    private boolean dirty;
+    private Path source;
+
+    // set when loaded with LoadOption#COMPACT, missing values are then returned without being added
+    private boolean readOnly;
+
+    private AIRMetrics metrics = AIRMetrics.NOOP;
+
+    private final List<AIRListener> listeners = new CopyOnWriteArrayList<>();
+
+    // the files listed in _head.include, in order
+    private List<Fragment> fragments = Collections.emptyList();
+
+    static class ManualObject {
         public final String key;
-        public final List<String> comments;
+        public List<String> comments;
+        public boolean dirty;
 
         private ManualObject(String key, List<String> comments) {
             this.key = key;
@@ -18,43 +64,62 @@ public class AIR {
         }
     }
 
-    private static class Section extends ManualObject {
-        public final Map<String, Value<?>> values;
+    static class Section extends ManualObject {
+        private final Map<String, Value<?>> values;
 
-        private Section(String key, List<String> comments) {
+        // the unparsed body of a lazily loaded section, cleared once its values are parsed
+        private ByteBuffer source;
+
+        // the included file the section was read from, null for the configuration itself
+        Fragment fragment;
+
+        Section(String key, List<String> comments) {
             super(key, comments);
             this.values = new LinkedHashMap<>();
         }
 
+        public Map<String, Value<?>> values() {
+            if (this.source != null) {
+                // parsed on the side, so that a body that fails to parse is kept as it was and fails the same way every time
+                Section parsed = new Section(this.key, null);
+                try {
+                    CharBuffer chars = decode(this.source.duplicate());
+                    parse(null, chars.array(), 0, chars.position(), parsed);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                for (Value<?> value : parsed.values.values()) {
+                    this.add(value.key, value);
+                }
+                this.source = null;
+            }
+            return this.values;
+        }
+
         public void add(String key, Value<?> value) {
             this.values.put(key, value);
             value.parent = this;
         }
-
-        public <T> Value<T> get(String key, ValueType<T> type) {
-            Value<?> val = this.values.computeIfAbsent(key, k -> {
-                Value<T> value = new Value<>(type, k, null, null);
-                value.parent = this;
-                return value;
-            });
-            if (val.type != type) {
-                throw new IllegalArgumentException("Failed to retrieve value for " + key + " of type " + type + " when type is already " + val.type);
-            }
-            return (Value<T>) val;
-        }
     }
 
     static class Value<T> extends ManualObject {
         public final ValueType<T> type;
-        public T value;
+        private T value;
         public Section parent;
 
-        private Value(ValueType<T> type, String key, T value, List<String> comments) {
+        Value(ValueType<T> type, String key, List<String> comments) {
             super(key, comments);
             if (type == null) {
                 throw new NullPointerException();
             }
             this.type = type;
+        }
+
+        public T get() {
+            return this.value;
+        }
+
+        public void set(T value) {
             this.value = value;
         }
 
@@ -62,222 +127,1835 @@ public class AIR {
             if (this.type == null) {
                 throw new RuntimeException("Cannot serialize unknown value");
             }
-            return this.type.serialize(this.value);
+            return this.type.serialize(this.get());
+        }
+
+        public void serializeTo(Appendable out) throws IOException {
+            this.type.serializeTo(this.get(), out);
+        }
+    }
+
+    static final class IntValue extends Value<Integer> {
+        public int intValue;
+
+        IntValue(String key, List<String> comments) {
+            super(ValueType.INT, key, comments);
+        }
+
+        @Override
+        public Integer get() {
+            return this.intValue;
+        }
+
+        @Override
+        public void set(Integer value) {
+            this.intValue = value;
+        }
+
+        @Override
+        public String serialize() {
+            return ValueType.INT_TYPE.serializeInt(this.intValue);
+        }
+
+        @Override
+        public void serializeTo(Appendable out) throws IOException {
+            ValueType.INT_TYPE.serializeTo(this.intValue, out);
+        }
+    }
+
+    static final class LongValue extends Value<Long> {
+        public long longValue;
+
+        LongValue(String key, List<String> comments) {
+            super(ValueType.LONG, key, comments);
+        }
+
+        @Override
+        public Long get() {
+            return this.longValue;
+        }
+
+        @Override
+        public void set(Long value) {
+            this.longValue = value;
+        }
+
+        @Override
+        public String serialize() {
+            return ValueType.LONG_TYPE.serializeLong(this.longValue);
+        }
+
+        @Override
+        public void serializeTo(Appendable out) throws IOException {
+            ValueType.LONG_TYPE.serializeTo(this.longValue, out);
+        }
+    }
+
+    // an int asked for as a long, the int stays stored until it is set to a long that does not fit in it
+    static final class WidenedLong extends Value<Long> {
+        private final AIR air;
+        final IntValue value;
+
+        WidenedLong(AIR air, IntValue value) {
+            super(ValueType.LONG, value.key, value.comments);
+            this.air = air;
+            this.value = value;
+            this.parent = value.parent;
+        }
+
+        @Override
+        public Long get() {
+            return (long) this.value.intValue;
+        }
+
+        @Override
+        public void set(Long value) {
+            long longValue = value;
+            if ((int) longValue == longValue) {
+                this.value.intValue = (int) longValue;
+                this.air.markDirty(this.value);
+                return;
+            }
+            LongValue replacement = new LongValue(this.key, this.comments);
+            replacement.longValue = longValue;
+            this.value.parent.add(this.key, replacement);
+            this.air.markDirty(replacement);
+            this.air.generation++;
+        }
+    }
+
+    static final class DoubleValue extends Value<Double> {
+        public double doubleValue;
+
+        DoubleValue(String key, List<String> comments) {
+            super(ValueType.DOUBLE, key, comments);
+        }
+
+        @Override
+        public Double get() {
+            return this.doubleValue;
+        }
+
+        @Override
+        public void set(Double value) {
+            this.doubleValue = value;
+        }
+
+        @Override
+        public String serialize() {
+            return ValueType.DOUBLE_TYPE.serializeDouble(this.doubleValue);
+        }
+
+        @Override
+        public void serializeTo(Appendable out) throws IOException {
+            ValueType.DOUBLE_TYPE.serializeTo(this.doubleValue, out);
+        }
+    }
+
+    static final class BooleanValue extends Value<Boolean> {
+        public boolean booleanValue;
+
+        BooleanValue(String key, List<String> comments) {
+            super(ValueType.BOOL, key, comments);
+        }
+
+        @Override
+        public Boolean get() {
+            return this.booleanValue;
+        }
+
+        @Override
+        public void set(Boolean value) {
+            this.booleanValue = value;
+        }
+
+        @Override
+        public String serialize() {
+            return ValueType.BOOL_TYPE.serializeBoolean(this.booleanValue);
+        }
+
+        @Override
+        public void serializeTo(Appendable out) throws IOException {
+            ValueType.BOOL_TYPE.serializeTo(this.booleanValue, out);
+        }
+    }
+
+    // a value of a ValueType.TextType, keeping the text it was read from next to the parsed value
+    static final class TextValue<T> extends Value<T> {
+        public String text;
+
+        TextValue(ValueType.TextType<T> type, String key, List<String> comments) {
+            super(type, key, comments);
+        }
+
+        void init(String text, T value) {
+            this.text = text;
+            super.set(value);
+        }
+
+        @Override
+        public void set(T value) {
+            this.init(((ValueType.TextType<T>) this.type).formatText(value), value);
+        }
+
+        @Override
+        public String serialize() {
+            return ValueType.STRING.serialize(this.text);
+        }
+
+        @Override
+        public void serializeTo(Appendable out) throws IOException {
+            ValueType.STRING.serializeTo(this.text, out);
+        }
+    }
+
+    static final class ListValue extends Value<List<Value<?>>> {
+        // the type of every element, worked out whenever the list is set, null if the list is empty or mixed
+        ValueType<?> elementType;
+        // immutable result of the last typed getter, dropped whenever the list is set
+        Object cached;
+
+        ListValue(String key, List<String> comments) {
+            super(ValueType.LIST, key, comments);
+        }
+
+        @Override
+        public void set(List<Value<?>> value) {
+            super.set(value);
+            this.cached = null;
+            if (value instanceof CompactList) {
+                this.elementType = ((CompactList) value).elementType;
+            } else if (value == null || value.isEmpty()) {
+                this.elementType = null;
+            } else {
+                ValueType<?> type = value.get(0).type;
+                for (Value<?> element : value) {
+                    if (element.type != type) {
+                        type = null;
+                        break;
+                    }
+                }
+                this.elementType = type;
+            }
         }
     }
 
     public AIR(){}
 
     public AIR(InputStream stream) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream))) {
-            Section currentSection = null;
-            List<String> currentComment = new ArrayList<>();
-            String listKey = null;
-            List<Object> currentList = null;
+        this(stream, AIRMetrics.NOOP);
+    }
+
+    /**
+     * Reads the configuration from the stream, reporting the parse and every later use to the metrics.
+     */
+    public AIR(InputStream stream, AIRMetrics metrics) throws IOException {
+        this.metrics = metrics;
+        if (metrics == AIRMetrics.NOOP) {
+            this.read(stream);
+        } else {
+            long start = System.nanoTime();
+            CountingInputStream counting = new CountingInputStream(stream);
+            this.read(counting);
+            metrics.onParse(System.nanoTime() - start, counting.count);
+        }
+    }
+
+    /**
+     * Loads a UTF-8 encoded configuration from a file, memory mapping it when it is large.
+     */
+    public static AIR load(Path path, LoadOption... options) throws IOException {
+        return load(path, AIRMetrics.NOOP, options);
+    }
+
+    /**
+     * Loads a UTF-8 encoded configuration from a file, reporting the parse and every later use to the metrics.
+     * <p>
+     * The {@code include} value of the {@code _head} section can list further files, relative to this one, whose sections
+     * are added to this configuration. They are loaded in parallel with the same options, and a file that did not change
+     * since it was last loaded is copied from memory instead of parsed again. Saving to a path writes changed values back
+     * to the file they were read from, while new sections go to the including file.
+     */
+    public static AIR load(Path path, AIRMetrics metrics, LoadOption... options) throws IOException {
+        AIR air = loadFile(path, metrics, options);
+        air.include(path, metrics, options);
+        return air;
+    }
+
+    // loads a single file, without processing includes
+    static AIR loadFile(Path path, AIRMetrics metrics, LoadOption... options) throws IOException {
+        if (Arrays.asList(options).contains(LoadOption.CACHE)) {
+            // read before the contents, so that a change while loading leaves the cache looking outdated
+            return loadCached(path, Files.getLastModifiedTime(path).toMillis(), null, metrics, options);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Configuration " + path + " is too large to load");
+            }
+            // lazily loaded sections keep their text until used, which must not change with the file or vanish when it shrinks
+            boolean lazy = Arrays.asList(options).contains(LoadOption.LAZY) && !Arrays.asList(options).contains(LoadOption.COMPACT);
+            if (size >= MAP_THRESHOLD && !lazy) {
+                AIR air = load(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), metrics, options);
+                air.source = path;
+                return air;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // keep reading until the buffer is full
+            }
+            buffer.flip();
+            AIR air = load(buffer, metrics, options);
+            air.source = path;
+            return air;
+        }
+    }
+
+    // loads a single file from contents that were already read, without processing includes
+    static AIR loadFile(Path path, byte[] text, long modified, AIRMetrics metrics, LoadOption... options) throws IOException {
+        if (Arrays.asList(options).contains(LoadOption.CACHE)) {
+            return loadCached(path, modified, text, metrics, options);
+        }
+        AIR air = load(ByteBuffer.wrap(text), metrics, options);
+        air.source = path;
+        return air;
+    }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
+    // adds the sections of the files listed in _head.include, loading them in parallel
+    private void include(Path path, AIRMetrics metrics, LoadOption[] options) throws IOException {
+        Section head = this.sections.get(Fragment.HEAD);
+        Value<?> include = head == null ? null : head.values().get(Fragment.INCLUDE);
+        if (include == null) {
+            return;
+        }
+        List<Path> paths = Fragment.paths(path, include);
+        List<ForkJoinTask<Fragment.Cached>> tasks = new ArrayList<>(paths.size());
+        for (Path fragmentPath : paths) {
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                try {
+                    return Fragment.load(fragmentPath, metrics, options);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
 
-                if (line.length() == 0) {
-                    continue; // empty line
+        List<Fragment> fragments = new ArrayList<>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            Fragment.Cached cached;
+            try {
+                cached = tasks.get(i).join();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            AIR loaded = cached.copy(metrics);
+            Fragment fragment = new Fragment(paths.get(i), loaded.sections.remove(Fragment.HEAD), cached);
+            if (fragment.head != null && fragment.head.values().containsKey(Fragment.INCLUDE)) {
+                throw new IllegalArgumentException("Invalid configuration, " + fragment.path + " is included and cannot include other files");
+            }
+            for (Section section : loaded.sections.values()) {
+                Section existing = this.sections.get(section.key);
+                if (existing != null) {
+                    throw new IllegalArgumentException("Invalid configuration, section " + section.key + " of " + fragment.path
+                            + " is already defined in " + (existing.fragment == null ? path : existing.fragment.path));
                 }
+                section.fragment = fragment;
+                this.sections.put(section.key, section);
+            }
+            fragments.add(fragment);
+        }
+        this.fragments = fragments;
+    }
 
-                if (line.startsWith("#")) {
-                    currentComment.add(line.substring(1).trim());
-                } else if (line.startsWith("[")) {
-                    if (!line.endsWith("]")) {
-                        throw new IllegalArgumentException("Invalid configuration, section '" + line + "' does not end with ]");
-                    }
-                    if (line.length() < 3) {
-                        throw new IllegalArgumentException("Invalid configuration, section '" + line + "' does not have a name");
-                    }
-                    String sectionName = line.substring(1, line.length() - 1);
-                    Section newSection = new Section(sectionName, currentComment);
-                    currentComment = new ArrayList<>();
-                    currentSection = newSection;
-                    this.sections.put(sectionName, newSection);
-                } else {
-                    if (currentSection == null) {
-                        throw new IllegalArgumentException("Invalid configuration, found value outside of section " + line);
-                    }
-                    String key;
-                    String value;
-
-                    if (currentList == null) {
-                        int equals = line.indexOf("=");
-                        if (equals <= 1 || equals == line.length() - 1) {
-                            throw new IllegalArgumentException("Invalid configuration, assignment invalid " + line);
-                        }
-
-                        key = line.substring(0, equals).trim();
-                        value = line.substring(equals + 1).trim();
-
-                        if (value.length() == 0) {
-                            throw new IllegalArgumentException("Invalid configuration, value does not exist " + line);
-                        }
-                        if (value.equals("[")) {
-                            // start reading list
-                            listKey = key;
-                            currentList = new ArrayList<>();
-                            continue;
-                        }
-
-                    } else {
-                        key = null;
-                        value = line.trim();
-
-                        if (value.equals("]")) {
-                            currentSection.add(listKey, new Value(ValueType.LIST, listKey, currentList, currentComment));
-                            currentList = null;
-                            listKey = null;
-                            continue;
-                        }
-
-                        if (value.endsWith(",")) {
-                            value = value.substring(0, value.length() - 1);
-                        }
+    /**
+     * The files included through the {@code _head} section when this configuration was loaded.
+     */
+    public List<Path> getIncludes() {
+        List<Path> paths = new ArrayList<>(this.fragments.size());
+        for (Fragment fragment : this.fragments) {
+            paths.add(fragment.path);
+        }
+        return paths;
+    }
+
+    // a copy whose sections and values can be changed without affecting this configuration
+    AIR copy(AIRMetrics metrics) {
+        AIR copy = new AIR();
+        copy.metrics = metrics;
+        copy.readOnly = this.readOnly;
+        copy.source = this.source;
+        for (Section section : this.sections.values()) {
+            Section copied = new Section(section.key, this.readOnly ? section.comments : new ArrayList<>(section.comments));
+            if (section.source != null) {
+                copied.source = section.source.duplicate();
+            } else {
+                for (Value<?> value : section.values.values()) {
+                    copied.add(value.key, copy(value, this.readOnly ? value.comments : new ArrayList<>(value.comments)));
+                }
+            }
+            copy.sections.put(copied.key, copied);
+        }
+        return copy;
+    }
+
+    private static <T> Value<T> copy(Value<T> value, List<String> comments) {
+        Value<T> copy = value.type.create(value.key, comments);
+        if (value instanceof TextValue) {
+            ((TextValue<T>) copy).init(((TextValue<T>) value).text, value.get());
+        } else if (value.type == ValueType.LIST && !(value.get() instanceof CompactList)) {
+            // compact lists are never changed in place and can be shared
+            List<Value<?>> list = ((ListValue) value).get();
+            List<Value<?>> elements = new ArrayList<>(list.size());
+            for (Value<?> element : list) {
+                elements.add(copy(element, element.comments));
+            }
+            ((ListValue) copy).set(elements);
+        } else {
+            copy.set(value.get());
+        }
+        return copy;
+    }
+
+    // loads from the binary cache next to the file when it is up to date, otherwise parses the file and writes a new cache
+    // the text is read here when it is null, and only if the cache is outdated
+    private static AIR loadCached(Path path, long modified, byte[] text, AIRMetrics metrics, LoadOption[] options) throws IOException {
+        long start = metrics == AIRMetrics.NOOP ? 0 : System.nanoTime();
+        AIR air = loadCached(path, modified, text);
+        if (Arrays.asList(options).contains(LoadOption.COMPACT)) {
+            air.compact();
+        }
+        air.metrics = metrics;
+        if (metrics != AIRMetrics.NOOP) {
+            metrics.onParse(System.nanoTime() - start, text == null ? Files.size(path) : text.length);
+        }
+        return air;
+    }
+
+    private static AIR loadCached(Path path, long modified, byte[] text) throws IOException {
+        Path cachePath = BinaryCache.pathFor(path);
+        AIR air = new AIR();
+        air.source = path;
+
+        BinaryCache cache = BinaryCache.open(cachePath);
+        if (cache != null && cache.size == (text == null ? Files.size(path) : text.length)) {
+            boolean current = cache.modified == modified && !cache.racy;
+            if (!current || text != null) {
+                // touched without changing, such as by a checkout, changed within the resolution of the modification time,
+                // or the contents were read already and are checked anyway
+                if (text == null) {
+                    text = Files.readAllBytes(path);
+                }
+                current = cache.hash == BinaryCache.hash(text);
+            }
+            if (current) {
+                try {
+                    cache.read(air.sections);
+                    if (cache.modified != modified || cache.racy && !BinaryCache.racy(modified)) {
+                        writeCache(cachePath, air, cache.size, modified, cache.hash);
                     }
+                    return air;
+                } catch (IOException | RuntimeException e) {
+                    // a cache that cannot be read is a miss, the file is parsed and the cache written again
+                    air.sections.clear();
+                }
+            }
+        }
+
+        if (text == null) {
+            text = Files.readAllBytes(path);
+        }
+        CharBuffer chars = decode(ByteBuffer.wrap(text));
+        parse(air.sections, chars.array(), 0, chars.position(), null);
+        writeCache(cachePath, air, text.length, modified, BinaryCache.hash(text));
+        return air;
+    }
+
+    private static void writeCache(Path cachePath, AIR air, long size, long modified, int hash) {
+        try {
+            BinaryCache.write(cachePath, air.sections.values(), size, modified, hash);
+        } catch (IOException e) {
+            // the cache only speeds up the next load, the configuration itself was read fine
+        }
+    }
+
+    /**
+     * Loads a UTF-8 encoded configuration from the remaining bytes of the buffer, without changing its position.
+     */
+    public static AIR load(ByteBuffer buffer, LoadOption... options) throws IOException {
+        return load(buffer, AIRMetrics.NOOP, options);
+    }
 
-                    boolean found = false;
-                    for (ValueType<?> valueType : ValueType.values) {
-                        Optional<?> possible = valueType.apply(value);
-                        if (possible.isPresent()) {
-                            found = true;
-
-                            if (currentList == null) {
-                                currentSection.add(key, new Value(valueType, key, possible.get(), currentComment));
-                            } else {
-                                currentList.add(new Value(valueType, listKey, possible.get(), Collections.emptyList()));
-                            }
-                            break;
-                        }
+    /**
+     * Loads a UTF-8 encoded configuration from the remaining bytes of the buffer, reporting the parse and every later use to the metrics.
+     */
+    public static AIR load(ByteBuffer buffer, AIRMetrics metrics, LoadOption... options) throws IOException {
+        long start = metrics == AIRMetrics.NOOP ? 0 : System.nanoTime();
+        AIR air = new AIR();
+        air.metrics = metrics;
+        List<LoadOption> list = Arrays.asList(options);
+        boolean compact = list.contains(LoadOption.COMPACT);
+        if (list.contains(LoadOption.LAZY) && !compact) {
+            index(air.sections, buffer.duplicate());
+        } else if (list.contains(LoadOption.PARALLEL)) {
+            index(air.sections, buffer.duplicate());
+            Section[] sections = air.sections.values().toArray(new Section[0]);
+            RuntimeException[] failures = new RuntimeException[sections.length];
+            ForkJoinPool.commonPool().invoke(new ParseTask(sections, failures, 0, sections.length));
+            // rethrown as they are, and the one of the first section, so that errors read the same as with a regular load
+            for (RuntimeException failure : failures) {
+                if (failure instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) failure).getCause();
+                } else if (failure != null) {
+                    throw failure;
+                }
+            }
+        } else {
+            CharBuffer chars = decode(buffer.duplicate());
+            parse(air.sections, chars.array(), 0, chars.position(), null);
+        }
+        if (compact) {
+            air.compact();
+        }
+        if (metrics != AIRMetrics.NOOP) {
+            metrics.onParse(System.nanoTime() - start, buffer.remaining());
+        }
+        return air;
+    }
+
+    // replaces every node with one that shares keys, strings and comment lists, and stores lists as arrays, see LoadOption#COMPACT
+    private void compact() {
+        this.readOnly = true;
+        Map<String, String> strings = new HashMap<>();
+        List<Section> sections = new ArrayList<>(this.sections.values());
+        this.sections.clear();
+        for (Section section : sections) {
+            Section compacted = new Section(section.key.intern(), Collections.emptyList());
+            for (Value<?> value : section.values().values()) {
+                Value<?> copy = compact(value, value.key.intern(), strings);
+                compacted.add(copy.key, copy);
+            }
+            this.sections.put(compacted.key, compacted);
+        }
+        this.generation++;
+    }
+
+    private static Value<?> compact(Value<?> value, String key, Map<String, String> strings) {
+        if (value.type == ValueType.STRING) {
+            Value<String> copy = ValueType.STRING.create(key, Collections.emptyList());
+            copy.set(dedupe(strings, (String) value.get()));
+            return copy;
+        } else if (value.type == ValueType.LIST) {
+            Value<List<Value<?>>> copy = ValueType.LIST.create(key, Collections.emptyList());
+            copy.set(CompactList.of(key, ((ListValue) value).get(), strings));
+            return copy;
+        }
+        return copy(value, key);
+    }
+
+    private static <T> Value<T> copy(Value<T> value, String key) {
+        Value<T> copy = value.type.create(key, Collections.emptyList());
+        copy.set(value.get());
+        return copy;
+    }
+
+    private static String dedupe(Map<String, String> strings, String string) {
+        String existing = strings.putIfAbsent(string, string);
+        return existing == null ? string : existing;
+    }
+
+    /**
+     * List of values all of the same type, stored as a single array and only turned into nodes when read.
+     * Used by {@link LoadOption#COMPACT} and {@link #setList(ValueType, String, List)}, and cannot be changed.
+     */
+    static final class CompactList extends AbstractList<Value<?>> implements RandomAccess {
+        final String key;
+        final ValueType<?> elementType;
+        // int[], long[], double[], boolean[] or String[] depending on the element type
+        final Object array;
+        private final int size;
+
+        private CompactList(String key, ValueType<?> elementType, Object array, int size) {
+            this.key = key;
+            this.elementType = elementType;
+            this.array = array;
+            this.size = size;
+        }
+
+        // stores the values as an array when the type has one, otherwise wraps each of them in a node
+        static <T> List<Value<?>> copyOf(String key, ValueType<T> type, List<T> values) {
+            int size = values.size();
+            Object array;
+            if (type == ValueType.INT) {
+                int[] ints = new int[size];
+                for (int i = 0; i < size; i++) {
+                    ints[i] = (Integer) values.get(i);
+                }
+                array = ints;
+            } else if (type == ValueType.LONG) {
+                long[] longs = new long[size];
+                for (int i = 0; i < size; i++) {
+                    longs[i] = (Long) values.get(i);
+                }
+                array = longs;
+            } else if (type == ValueType.DOUBLE) {
+                double[] doubles = new double[size];
+                for (int i = 0; i < size; i++) {
+                    doubles[i] = (Double) values.get(i);
+                }
+                array = doubles;
+            } else if (type == ValueType.BOOL) {
+                boolean[] booleans = new boolean[size];
+                for (int i = 0; i < size; i++) {
+                    booleans[i] = (Boolean) values.get(i);
+                }
+                array = booleans;
+            } else if (type == ValueType.STRING) {
+                array = values.toArray(new String[0]);
+            } else {
+                List<Value<?>> list = new ArrayList<>(size);
+                for (T value : values) {
+                    list.add(type.of(value));
+                }
+                return list;
+            }
+            return new CompactList(key, type, array, size);
+        }
+
+        static List<Value<?>> of(String key, List<Value<?>> values, Map<String, String> strings) {
+            if (values.isEmpty()) {
+                return Collections.emptyList();
+            }
+            ValueType<?> type = values.get(0).type;
+            for (Value<?> value : values) {
+                if (value.type != type) {
+                    // mixed lists keep their nodes, which still share the key and comments
+                    List<Value<?>> copy = new ArrayList<>(values.size());
+                    for (Value<?> element : values) {
+                        copy.add(compact(element, key, strings));
                     }
-                    if (!found) {
-                        throw new IllegalArgumentException("Invalid configuration, unknown type for " + line);
+                    return Collections.unmodifiableList(copy);
+                }
+            }
+
+            int size = values.size();
+            Object array;
+            if (type == ValueType.INT) {
+                int[] ints = new int[size];
+                for (int i = 0; i < size; i++) {
+                    ints[i] = ((IntValue) values.get(i)).intValue;
+                }
+                array = ints;
+            } else if (type == ValueType.LONG) {
+                long[] longs = new long[size];
+                for (int i = 0; i < size; i++) {
+                    longs[i] = ((LongValue) values.get(i)).longValue;
+                }
+                array = longs;
+            } else if (type == ValueType.DOUBLE) {
+                double[] doubles = new double[size];
+                for (int i = 0; i < size; i++) {
+                    doubles[i] = ((DoubleValue) values.get(i)).doubleValue;
+                }
+                array = doubles;
+            } else if (type == ValueType.BOOL) {
+                boolean[] booleans = new boolean[size];
+                for (int i = 0; i < size; i++) {
+                    booleans[i] = ((BooleanValue) values.get(i)).booleanValue;
+                }
+                array = booleans;
+            } else if (type == ValueType.STRING) {
+                String[] strs = new String[size];
+                for (int i = 0; i < size; i++) {
+                    strs[i] = dedupe(strings, (String) values.get(i).get());
+                }
+                array = strs;
+            } else {
+                List<Value<?>> copy = new ArrayList<>(size);
+                for (Value<?> element : values) {
+                    copy.add(compact(element, key, strings));
+                }
+                return Collections.unmodifiableList(copy);
+            }
+            return new CompactList(key, type, array, size);
+        }
+
+        @Override
+        public Value<?> get(int index) {
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for length " + this.size);
+            }
+            if (this.elementType == ValueType.STRING) {
+                Value<String> string = ValueType.STRING.create(this.key, Collections.emptyList());
+                string.set(((String[]) this.array)[index]);
+                return string;
+            }
+            Value<?> value = this.elementType.create(this.key, Collections.emptyList());
+            if (this.elementType == ValueType.INT) {
+                ((IntValue) value).intValue = ((int[]) this.array)[index];
+            } else if (this.elementType == ValueType.LONG) {
+                ((LongValue) value).longValue = ((long[]) this.array)[index];
+            } else if (this.elementType == ValueType.DOUBLE) {
+                ((DoubleValue) value).doubleValue = ((double[]) this.array)[index];
+            } else if (this.elementType == ValueType.BOOL) {
+                ((BooleanValue) value).booleanValue = ((boolean[]) this.array)[index];
+            }
+            return value;
+        }
+
+        // the element as it is read through a node, without creating the node
+        Object value(int index) {
+            if (this.elementType == ValueType.INT) {
+                return ((int[]) this.array)[index];
+            } else if (this.elementType == ValueType.LONG) {
+                return ((long[]) this.array)[index];
+            } else if (this.elementType == ValueType.DOUBLE) {
+                return ((double[]) this.array)[index];
+            } else if (this.elementType == ValueType.BOOL) {
+                return ((boolean[]) this.array)[index];
+            }
+            return ((String[]) this.array)[index];
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+    }
+
+    // finds the sections and their comments without parsing any values, see LoadOption#LAZY
+    private static void index(Map<String, Section> sections, ByteBuffer bytes) throws IOException {
+        int limit = bytes.limit();
+        Section currentSection = null;
+        List<String> currentComment = new ArrayList<>();
+        int bodyStart = 0;
+        int contentEnd = 0;
+
+        int next = bytes.position();
+        while (next < limit) {
+            int lineEnd = next;
+            while (lineEnd < limit && bytes.get(lineEnd) != '\n' && bytes.get(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            int start = next;
+            int end = lineEnd;
+            next = lineEnd + 1;
+            if (lineEnd + 1 < limit && bytes.get(lineEnd) == '\r' && bytes.get(lineEnd + 1) == '\n') {
+                next++;
+            }
+            while (start < end && (bytes.get(start) & 0xff) <= ' ') {
+                start++;
+            }
+            while (end > start && (bytes.get(end - 1) & 0xff) <= ' ') {
+                end--;
+            }
+
+            if (start == end) {
+                continue; // empty line
+            }
+
+            byte first = bytes.get(start);
+            if (first == '#') {
+                int commentStart = start + 1;
+                while (commentStart < end && (bytes.get(commentStart) & 0xff) <= ' ') {
+                    commentStart++;
+                }
+                currentComment.add(decode(bytes, commentStart, end));
+            } else if (first == '[') {
+                if (bytes.get(end - 1) != ']') {
+                    throw new IllegalArgumentException("Invalid configuration, section '" + decode(bytes, start, end) + "' does not end with ]");
+                }
+                if (end - start < 3) {
+                    throw new IllegalArgumentException("Invalid configuration, section '" + decode(bytes, start, end) + "' does not have a name");
+                }
+                if (currentSection != null) {
+                    currentSection.source = slice(bytes, bodyStart, contentEnd);
+                }
+                String sectionName = decode(bytes, start + 1, end - 1);
+                currentSection = new Section(sectionName, currentComment);
+                currentComment = new ArrayList<>();
+                sections.put(sectionName, currentSection);
+                bodyStart = Math.min(next, limit);
+                contentEnd = bodyStart;
+            } else {
+                if (currentSection == null) {
+                    throw new IllegalArgumentException("Invalid configuration, found value outside of section " + decode(bytes, start, end));
+                }
+                // comments in between values belong to the body, only the ones before the next section do not
+                currentComment.clear();
+                contentEnd = lineEnd;
+            }
+        }
+        if (currentSection != null) {
+            currentSection.source = slice(bytes, bodyStart, contentEnd);
+        }
+    }
+
+    // parses the bodies of indexed sections, splitting until a task has little enough to parse on its own
+    private static final class ParseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int SPLIT_THRESHOLD = 64 * 1024;
+
+        private final Section[] sections;
+        // what parsing each section threw, kept here instead of thrown so that the pool does not wrap it
+        private final RuntimeException[] failures;
+        private final int from;
+        private final int to;
+
+        private ParseTask(Section[] sections, RuntimeException[] failures, int from, int to) {
+            this.sections = sections;
+            this.failures = failures;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            long size = 0;
+            for (int i = this.from; i < this.to; i++) {
+                if (this.sections[i].source != null) {
+                    size += this.sections[i].source.remaining();
+                }
+            }
+            if (this.to - this.from == 1 || size < SPLIT_THRESHOLD) {
+                for (int i = this.from; i < this.to; i++) {
+                    try {
+                        this.sections[i].values();
+                    } catch (RuntimeException e) {
+                        this.failures[i] = e;
                     }
+                }
+                return;
+            }
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new ParseTask(this.sections, this.failures, this.from, middle), new ParseTask(this.sections, this.failures, middle, this.to));
+        }
+    }
 
-                    currentComment = new ArrayList<>();
+    private static ByteBuffer slice(ByteBuffer bytes, int start, int end) {
+        if (end <= start) {
+            return null;
+        }
+        ByteBuffer slice = bytes.duplicate();
+        slice.limit(end);
+        slice.position(start);
+        return slice.slice();
+    }
+
+    private static String decode(ByteBuffer bytes, int start, int end) throws IOException {
+        if (end <= start) {
+            return "";
+        }
+        CharBuffer chars = decode(slice(bytes, start, end));
+        return new String(chars.array(), 0, chars.position());
+    }
+
+    private static CharBuffer decode(ByteBuffer bytes) throws IOException {
+        CharBuffer chars = CharBuffer.allocate(bytes.remaining());
+        char[] array = chars.array();
+
+        // plain ascii can be copied over without going through the decoder
+        int position = bytes.position();
+        int limit = bytes.limit();
+        int length = 0;
+        while (position < limit) {
+            byte b = bytes.get(position);
+            if (b < 0) {
+                break;
+            }
+            array[length++] = (char) b;
+            position++;
+        }
+        bytes.position(position);
+        chars.position(length);
+
+        if (bytes.hasRemaining()) {
+            CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CoderResult result = decoder.decode(bytes, chars, true);
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+            result = decoder.flush(chars);
+            if (!result.isUnderflow()) {
+                result.throwException();
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * Replaces the contents of this configuration with the one read from the stream.
+     * Existing {@link ConfigKey} handles stay valid and resolve against the new values.
+     */
+    public void reload(InputStream stream) throws IOException {
+        AIR loaded = new AIR(stream, this.metrics);
+        if (this.readOnly) {
+            loaded.compact();
+        }
+        this.sections.clear();
+        this.sections.putAll(loaded.sections);
+        this.fragments = Collections.emptyList();
+        this.generation++;
+        this.dirty = false;
+    }
+
+    // counts the bytes read for AIRMetrics#onParse
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                this.count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read != -1) {
+                this.count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            this.count += skipped;
+            return skipped;
+        }
+    }
+
+    private void read(InputStream stream) throws IOException {
+        // the platform charset, the same as save(OutputStream) writes with
+        try (AIRReader reader = new AIRReader(stream, Charset.defaultCharset())) {
+            build(this.sections, reader, null);
+        }
+    }
+
+    private static void parse(Map<String, Section> sections, char[] buf, int offset, int end, Section section) throws IOException {
+        build(sections, new AIRReader(buf, offset, end, section != null), section);
+    }
+
+    // builds into the sections, or into the given section when only the body of a section is being read
+    private static void build(Map<String, Section> sections, AIRReader reader, Section section) throws IOException {
+        Section currentSection = section;
+        // collected here and copied to lists of the exact size, most values have one comment or none
+        List<String> currentComment = new ArrayList<>();
+        List<Value<?>> currentList = new ArrayList<>();
+        List<String> listComment = null;
+
+        AIRReader.Event event;
+        while ((event = reader.next()) != null) {
+            switch (event) {
+                case COMMENT:
+                    currentComment.add(reader.getComment());
+                    break;
+                case SECTION:
+                    currentSection = new Section(reader.getSection(), new ArrayList<>(currentComment));
+                    currentComment.clear();
+                    sections.put(currentSection.key, currentSection);
+                    break;
+                case VALUE:
+                    Value<?> value = reader.value();
+                    value.comments = new ArrayList<>(currentComment);
+                    currentSection.add(value.key, value);
+                    currentComment.clear();
+                    break;
+                case LIST_START:
+                    // the comments above the key belong to the list, those between its elements are dropped
+                    listComment = new ArrayList<>(currentComment);
+                    currentComment.clear();
+                    break;
+                case LIST_ITEM:
+                    currentList.add(reader.value());
+                    currentComment.clear();
+                    break;
+                case LIST_END:
+                    Value<List<Value<?>>> list = ValueType.LIST.create(reader.getKey(), listComment);
+                    list.set(new ArrayList<>(currentList));
+                    currentSection.add(list.key, list);
+                    currentComment.clear();
+                    currentList.clear();
+                    listComment = null;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Whether anything was added or changed since this configuration was loaded or last saved to a file.
+     */
+    public boolean isDirty() {
+        return this.dirty;
+    }
+
+    void checkWritable() {
+        if (this.readOnly) {
+            throw new UnsupportedOperationException("Configuration was loaded with " + LoadOption.COMPACT + " and cannot be changed or saved");
+        }
+    }
+
+    void markDirty(ManualObject object) {
+        if (object instanceof WidenedLong) {
+            object = ((WidenedLong) object).value;
+        }
+        object.dirty = true;
+        this.dirty = true;
+    }
+
+    private void markClean() {
+        for (Section section : this.sections.values()) {
+            section.dirty = false;
+            for (Value<?> value : section.values.values()) {
+                value.dirty = false;
+            }
+        }
+        this.dirty = false;
+    }
+
+    /**
+     * Saves this configuration as UTF-8, unless nothing changed since it was loaded from the same file or the file
+     * already has the same contents. The file is replaced atomically, so readers never see a partially written file.
+     * Changed values of included files are written back to those files.
+     *
+     * @return whether any file was written
+     */
+    public synchronized boolean save(Path path) throws IOException {
+        this.checkWritable();
+        boolean written = false;
+        for (Map.Entry<Path, ByteBuffer> file : this.files(path).entrySet()) {
+            Path target = file.getKey();
+            ByteBuffer bytes = file.getValue();
+            if (!Files.exists(target) || Files.size(target) != bytes.remaining() || !ByteBuffer.wrap(Files.readAllBytes(target)).equals(bytes)) {
+                writeAtomically(target, bytes);
+                written = true;
+            }
+        }
+        this.markClean();
+        this.source = path;
+        return written;
+    }
+
+    // serialized under the lock for AIRSaver, which then writes the files without holding it
+    synchronized Map<Path, ByteBuffer> prepareSave(Path path) throws IOException {
+        this.checkWritable();
+        Map<Path, ByteBuffer> files = this.files(path);
+        this.markClean();
+        this.source = path;
+        return files;
+    }
+
+    // called by AIRSaver when writing failed, so that the next save writes every file again
+    synchronized void saveFailed() {
+        for (Section section : this.sections.values()) {
+            section.dirty = true;
+        }
+        this.dirty = true;
+    }
+
+    // the contents of every file that changed, this configuration itself at the path and included files at their own paths
+    private Map<Path, ByteBuffer> files(Path path) throws IOException {
+        Map<Path, ByteBuffer> files = new LinkedHashMap<>();
+        if (!this.dirty && path.equals(this.source)) {
+            return files;
+        }
+        if (!path.equals(this.source) || this.isDirty(null)) {
+            files.put(path, this.contents(null));
+        }
+        for (Fragment fragment : this.fragments) {
+            if (this.isDirty(fragment)) {
+                files.put(fragment.path, this.contents(fragment));
+            }
+        }
+        return files;
+    }
+
+    // whether anything read from the file changed, lazily loaded sections that were never parsed are unchanged
+    private boolean isDirty(Fragment fragment) {
+        for (Section section : this.sections.values()) {
+            if (section.fragment != fragment) {
+                continue;
+            }
+            if (section.dirty) {
+                return true;
+            }
+            for (Value<?> value : section.values.values()) {
+                if (value.dirty) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private ByteBuffer contents(Fragment fragment) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        this.write(new Serializer(Channels.newChannel(output), StandardCharsets.UTF_8), fragment);
+        return ByteBuffer.wrap(output.toByteArray());
+    }
+
+    static void writeAtomically(Path path, ByteBuffer bytes) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
                 }
+                channel.force(true);
+            }
+            // the temporary file is only readable by its owner, the file it replaces keeps its own permissions
+            if (Files.exists(path) && Files.getFileStore(temp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+                Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(path));
             }
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
         }
     }
 
     public void save(OutputStream stream) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stream))) {
-            for (Map.Entry<String, Section> entry : this.sections.entrySet()) {
-                Section section = entry.getValue();
-                if (section.comments != null) {
-                    for (String comment : section.comments) {
-                        writer.write("# " + comment + "\n");
-                    }
+        this.checkWritable();
+        try (WritableByteChannel channel = Channels.newChannel(stream)) {
+            this.write(new Serializer(channel, Charset.defaultCharset()), null);
+        }
+    }
+
+    /**
+     * Saves this configuration as UTF-8 to the channel, without closing it.
+     * Sections of included files are left out, as they are saved to their own files.
+     */
+    public void save(WritableByteChannel channel) throws IOException {
+        this.checkWritable();
+        this.write(new Serializer(channel, StandardCharsets.UTF_8), null);
+    }
+
+    // writes the sections read from the fragment, or from this configuration itself when it is null
+    private void write(Serializer serializer, Fragment fragment) throws IOException {
+        long start = this.metrics == AIRMetrics.NOOP ? 0 : System.nanoTime();
+        StringBuilder out = serializer.buffer();
+        Collection<Section> sections = this.sections.values();
+        if (!this.fragments.isEmpty()) {
+            sections = new ArrayList<>();
+            if (fragment != null && fragment.head != null) {
+                sections.add(fragment.head);
+            }
+            for (Section section : this.sections.values()) {
+                if (section.fragment == fragment) {
+                    sections.add(section);
                 }
-                writer.write("[" + section.key + "]" + "\n");
-                for (Value value : section.values.values()) {
-                    if (value.comments != null) {
-                        for (String comment : value.comments) {
-                            writer.write("  # " + comment + "\n");
-                        }
-                    }
-                    writer.write("  " + value.key + " = " + value.serialize() + "\n");
+            }
+        }
+        for (Section section : sections) {
+            for (String comment : section.comments) {
+                out.append("# ").append(comment).append('\n');
+            }
+            out.append('[').append(section.key).append("]\n");
+            if (section.source != null) {
+                // sections that were never touched are written back as they were read
+                serializer.writeUtf8(section.source.duplicate());
+                out.append("\n\n");
+                continue;
+            }
+            for (Value<?> value : section.values.values()) {
+                for (String comment : value.comments) {
+                    out.append("  # ").append(comment).append('\n');
                 }
-                writer.write("\n");
+                out.append("  ").append(value.key).append(" = ");
+                value.serializeTo(out);
+                out.append('\n');
+                serializer.flushIfFull();
             }
+            out.append('\n');
+            serializer.flushIfFull();
+        }
+        serializer.finish();
+        if (this.metrics != AIRMetrics.NOOP) {
+            this.metrics.onSave(System.nanoTime() - start, serializer.written());
+        }
+    }
+
+    private static String[] split(String key) {
+        String[] split = key.split("\\.", 2);
+        if (split.length == 1) {
+            throw new IllegalArgumentException("Key " + key + " does not include section");
+        }
+        return split;
+    }
+
+    private Section section(String key) {
+        Section section = this.sections.get(key);
+        if (section == null && this.readOnly) {
+            return new Section(key, Collections.emptyList());
+        } else if (section == null) {
+            section = new Section(key, null);
+            this.sections.put(key, section);
+            this.markDirty(section);
+        }
+        return section;
+    }
+
+    // returns the value if it exists, converting it if the requested type can be read from the stored one
+    @SuppressWarnings("unchecked")
+    private <T> Value<T> lookup(Section section, ValueType<T> type, String key) {
+        Value<?> value = section.values().get(key);
+        if (value == null || value.type == type) {
+            return (Value<T>) value;
+        }
+        if (type == ValueType.LONG && value instanceof IntValue) {
+            // left stored as an int, so that it can still be read as one
+            return (Value<T>) new WidenedLong(this, (IntValue) value);
+        }
+        Value<T> converted = type.convert(value);
+        if (converted == null) {
+            this.metrics.onMismatch(section.key + "." + key);
+            throw new IllegalArgumentException("Failed to retrieve value for " + key + " of type " + type + " when type is already " + value.type);
+        }
+        section.add(key, converted);
+        this.generation++;
+        return converted;
+    }
+
+    private <T> Value<T> insert(Section section, ValueType<T> type, String key, String[] comment) {
+        if (this.readOnly) {
+            return type.create(key, Collections.emptyList());
+        }
+        Value<T> value = type.create(key, null);
+        value.comments.addAll(Arrays.asList(comment));
+        section.add(key, value);
+        this.markDirty(value);
+        return value;
+    }
+
+    private void comment(Value<?> value, String[] comment) {
+        if (value.comments.isEmpty() && comment.length > 0 && !this.readOnly) {
+            value.comments.addAll(Arrays.asList(comment));
+            this.markDirty(value);
         }
     }
 
     private ManualObject getObject(ValueType<?> type, String key) {
         String[] split = key.split("\\.", 2);
         if (split.length == 1) {
-            return this.sections.computeIfAbsent(key, k -> new Section(k, null));
+            return this.section(key);
         }
-        return this.sections.computeIfAbsent(split[0], k -> new Section(k, null)).get(split[1], type);
+        Section section = this.section(split[0]);
+        Value<?> value = this.lookup(section, type, split[1]);
+        return value == null ? this.insert(section, type, split[1], new String[0]) : value;
     }
 
     public void setComment(String key, String... comment) {
+        this.checkWritable();
         String[] split = key.split("\\.", 2);
-        ManualObject object = this.sections.computeIfAbsent(split[0], v -> new Section(split[0], null));
+        ManualObject object = this.section(split[0]);
         object.comments.clear();
         object.comments.addAll(Arrays.asList(comment));
+        this.markDirty(object);
     }
 
     private <T> T get(ValueType<T> type, String key, T defaultValue, String... comment) {
-        String[] split = key.split("\\.", 2);
-        if (split.length == 1) {
-            throw new IllegalArgumentException("Key " + key + " does not include section");
+        this.metrics.onLookup(key);
+        String[] split = split(key);
+        return this.resolve(type, split[0], split[1], defaultValue, comment).get();
+    }
+
+    <T> Value<T> resolve(ValueType<T> type, String sectionKey, String valueKey, T defaultValue, String... comment) {
+        Section section = this.section(sectionKey);
+        Value<T> value = this.lookup(section, type, valueKey);
+        if (value == null) {
+            if (this.metrics != AIRMetrics.NOOP) {
+                this.metrics.onDefault(sectionKey + "." + valueKey);
+            }
+            value = this.insert(section, type, valueKey, comment);
+            value.set(defaultValue);
+            return value;
         }
-        Section section = this.sections.computeIfAbsent(split[0], k -> new Section(k, null));
-        if (!section.values.containsKey(split[1])) {
-            Value value = section.get(split[1], type);
-            value.value = defaultValue;
-            value.comments.addAll(Arrays.asList(comment));
-            return defaultValue;
+        this.comment(value, comment);
+        return value;
+    }
+
+    /**
+     * Applies a batch of changes at once, so that readers going through {@link #snapshot()} see either every change or
+     * none of them. The snapshot is rebuilt the first time it is read after a batch rather than by every batch. Listeners are notified once with everything that changed, with an
+     * empty diff when the batch only set comments or values that were already set, as the configuration still needs saving.
+     * If any change cannot be applied, for example because the key already exists with another type, nothing is changed.
+     * <p>
+     * Batches from several threads are applied one at a time, other threads should only read through the snapshot meanwhile.
+     *
+     * @return the values that changed
+     */
+    public synchronized AIRDiff edit(Consumer<AIRTransaction> edit) {
+        this.checkWritable();
+        AIRTransaction transaction = new AIRTransaction();
+        edit.accept(transaction);
+
+        // check every change before applying any, and remember what each key held before
+        Map<String, Object> previous = new LinkedHashMap<>();
+        // the type each key has once the changes before it are applied
+        Map<String, ValueType<?>> types = new HashMap<>();
+        for (AIRTransaction.Change change : transaction.changes) {
+            if (change.type == null) {
+                continue;
+            }
+            String[] split = split(change.key);
+            Value<?> value = this.find(split[0], split[1]);
+            ValueType<?> type = types.get(change.key);
+            if (type == null && value != null) {
+                type = value.type;
+            }
+            if (type != null && type != change.type && (value == null || type != value.type || change.type.convert(value) == null)) {
+                throw new IllegalArgumentException("Failed to set " + change.key + " to type " + change.type + " when type is already " + type);
+            }
+            types.put(change.key, change.type);
+            if (!previous.containsKey(change.key)) {
+                previous.put(change.key, AIRDiff.valueOf(value));
+            }
         }
-        Value value = section.get(split[1], type);
-        if (value.type != type) {
-            throw new IllegalArgumentException("Failed to retrieve " + key + " because it already exists with type " + value.type + " when requested type is " + type);
+        for (AIRTransaction.Change change : transaction.changes) {
+            change.apply.accept(this);
         }
-        if (value.comments.isEmpty()) {
-            value.comments.addAll(Arrays.asList(comment));
+
+        List<AIRDiff.Change> changes = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : previous.entrySet()) {
+            String[] split = split(entry.getKey());
+            Object current = AIRDiff.valueOf(this.find(split[0], split[1]));
+            if (!Objects.equals(entry.getValue(), current)) {
+                changes.add(new AIRDiff.Change(entry.getKey(), split[0], entry.getValue(), current));
+            }
+        }
+        this.snapshot = null;
+        if (transaction.changes.isEmpty()) {
+            return AIRDiff.EMPTY;
+        }
+        // every change marks the configuration dirty, so listeners hear of it even when no value differs
+        AIRDiff diff = changes.isEmpty() ? AIRDiff.EMPTY : new AIRDiff(changes);
+        for (AIRListener listener : this.listeners) {
+            listener.onChange(diff);
+        }
+        return diff;
+    }
+
+    /**
+     * Listens for changes made through {@link #edit(Consumer)}, which notifies listeners once per batch.
+     */
+    public void addListener(AIRListener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(AIRListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Reports how this configuration is used from now on, pass {@link AIRMetrics#NOOP} to stop.
+     */
+    public void setMetrics(AIRMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    public AIRMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Creates a handle for the value at the given key, inserting the default and comments the same way the getters do.
+     * The section and value are only looked up once, after which reads are a field access.
+     */
+    public <T> ConfigKey<T> key(String key, ValueType<T> type, T defaultValue, String... comment) {
+        String[] split = split(key);
+        return new ConfigKey<>(this, type, split[0], split[1], defaultValue, comment);
+    }
+
+    /**
+     * Creates an immutable snapshot of the current values and publishes it to {@link #snapshot()}.
+     * Lazily loaded sections are parsed in the process.
+     */
+    public AIRSnapshot freeze() {
+        AIRSnapshot snapshot = AIRSnapshot.of(this.values());
+        this.snapshot = snapshot;
+        return snapshot;
+    }
+
+    // every value in order, parsing lazily loaded sections
+    List<Value<?>> values() {
+        List<Value<?>> values = new ArrayList<>();
+        for (Section section : this.sections.values()) {
+            values.addAll(section.values().values());
+        }
+        return values;
+    }
+
+    // the value if it exists, without adding anything or converting it
+    Value<?> find(String sectionKey, String valueKey) {
+        Section section = this.sections.get(sectionKey);
+        return section == null ? null : section.values().get(valueKey);
+    }
+
+    /**
+     * Returns the snapshot last published by {@link #freeze()} or {@link #edit(Consumer)}, safe to call from any thread while
+     * this configuration is being changed.
+     */
+    public AIRSnapshot snapshot() {
+        AIRSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        // rebuilt under the same lock as edits, so it never sees half of a batch
+        synchronized (this) {
+            if (this.snapshot == null) {
+                this.snapshot = AIRSnapshot.of(this.values());
+            }
+            return this.snapshot;
         }
-        return (T) value.value;
     }
 
     public boolean getBoolean(String key, boolean defaultValue, String... comment) {
-        return this.get(ValueType.BOOL, key, defaultValue, comment);
+        this.metrics.onLookup(key);
+        String[] split = split(key);
+        Section section = this.section(split[0]);
+        Value<Boolean> value = this.lookup(section, ValueType.BOOL, split[1]);
+        if (value == null) {
+            this.metrics.onDefault(key);
+            ((BooleanValue) this.insert(section, ValueType.BOOL, split[1], comment)).booleanValue = defaultValue;
+            return defaultValue;
+        }
+        this.comment(value, comment);
+        return ((BooleanValue) value).booleanValue;
     }
 
     public int getInt(String key, int defaultValue, String... comment) {
-        return this.get(ValueType.INT, key, defaultValue, comment);
+        this.metrics.onLookup(key);
+        String[] split = split(key);
+        Section section = this.section(split[0]);
+        Value<Integer> value = this.lookup(section, ValueType.INT, split[1]);
+        if (value == null) {
+            this.metrics.onDefault(key);
+            ((IntValue) this.insert(section, ValueType.INT, split[1], comment)).intValue = defaultValue;
+            return defaultValue;
+        }
+        this.comment(value, comment);
+        return ((IntValue) value).intValue;
+    }
+
+    public long getLong(String key, long defaultValue, String... comment) {
+        this.metrics.onLookup(key);
+        String[] split = split(key);
+        Section section = this.section(split[0]);
+        Value<?> stored = section.values().get(split[1]);
+        if (stored instanceof IntValue) {
+            // widened straight from the int, without a long view of it
+            this.comment(stored, comment);
+            return ((IntValue) stored).intValue;
+        }
+        Value<Long> value = this.lookup(section, ValueType.LONG, split[1]);
+        if (value == null) {
+            this.metrics.onDefault(key);
+            ((LongValue) this.insert(section, ValueType.LONG, split[1], comment)).longValue = defaultValue;
+            return defaultValue;
+        }
+        this.comment(value, comment);
+        return ((LongValue) value).longValue;
     }
 
     public double getDouble(String key, double defaultValue, String... comment) {
-        return this.get(ValueType.DOUBLE, key, defaultValue, comment);
+        this.metrics.onLookup(key);
+        String[] split = split(key);
+        Section section = this.section(split[0]);
+        Value<Double> value = this.lookup(section, ValueType.DOUBLE, split[1]);
+        if (value == null) {
+            this.metrics.onDefault(key);
+            ((DoubleValue) this.insert(section, ValueType.DOUBLE, split[1], comment)).doubleValue = defaultValue;
+            return defaultValue;
+        }
+        this.comment(value, comment);
+        return ((DoubleValue) value).doubleValue;
     }
 
     public String getString(String key, String defaultValue, String... comment) {
         return this.get(ValueType.STRING, key, defaultValue, comment);
     }
 
+    /**
+     * Reads a duration stored as a string, see {@link ValueType#DURATION}. It is parsed once and kept until the value changes.
+     */
+    public Duration getDuration(String key, Duration defaultValue, String... comment) {
+        return this.get(ValueType.DURATION, key, defaultValue, comment);
+    }
+
+    /**
+     * Reads a number of bytes stored as a string, see {@link ValueType#BYTE_SIZE}. It is parsed once and kept until the value changes.
+     */
+    public long getByteSize(String key, long defaultValue, String... comment) {
+        return this.get(ValueType.BYTE_SIZE, key, defaultValue, comment);
+    }
+
+    /**
+     * Reads a regular expression stored as a string. It is compiled once and kept until the value changes.
+     */
+    public Pattern getPattern(String key, Pattern defaultValue, String... comment) {
+        return this.get(ValueType.PATTERN, key, defaultValue, comment);
+    }
+
+    /**
+     * Reads a value of any registered type, inserting the default if it does not exist.
+     */
+    public <T> T get(String key, ValueType<T> type, T defaultValue, String... comment) {
+        return this.get(type, key, defaultValue, comment);
+    }
+
     public <T> List<T> getList(String key, ValueType<T> type, List<T> defaultValue, String... comment) throws IOException {
-        String[] split = key.split("\\.", 2);
-        if (split.length == 1) {
-            throw new IllegalArgumentException("Key " + key + " does not include section");
-        }
-        Section section = this.sections.computeIfAbsent(split[0], k -> new Section(k, null));
-        if (!section.values.containsKey(split[1])) {
-            Value<List<AIR.Value<?>>> value = section.get(split[1], ValueType.LIST);
-            value.value = defaultValue.stream().map(val -> new Value<>(type, null, val, null)).collect(Collectors.toList());
-            value.comments.addAll(Arrays.asList(comment));
+        this.metrics.onLookup(key);
+        String[] split = split(key);
+        Section section = this.section(split[0]);
+        Value<List<Value<?>>> value = this.lookup(section, ValueType.LIST, split[1]);
+        if (value == null) {
+            this.metrics.onDefault(key);
+            value = this.insert(section, ValueType.LIST, split[1], comment);
+            value.set(CompactList.copyOf(split[1], type, defaultValue));
             return defaultValue;
         }
-        Value<List<AIR.Value<?>>> value = section.get(split[1], ValueType.LIST);
-        if (value.comments.isEmpty()) {
-            value.comments.addAll(Arrays.asList(comment));
+        this.comment(value, comment);
+        List<Value<?>> list;
+        try {
+            list = elements(value, type);
+        } catch (IOException e) {
+            this.metrics.onMismatch(key);
+            throw e;
         }
-        List<Value<?>> list = value.value;
-        for (Value<?> val : list) {
-            if (val.type != type) {
-                throw new IOException("Found invalid type " + val.type + " when looking for " + type);
+        return values(list);
+    }
+
+    /**
+     * Reads a list of ints. The result is cached until the list changes, so reading it again does not allocate.
+     */
+    public ImmutableArray.OfInt getIntArray(String key, int[] defaultValue, String... comment) {
+        ListValue value = this.listValue(key, comment);
+        if (value == null) {
+            value = this.insertList(key, comment, ValueType.INT, defaultValue.clone(), defaultValue.length);
+        }
+        if (value.cached instanceof ImmutableArray.OfInt) {
+            return (ImmutableArray.OfInt) value.cached;
+        }
+
+        List<Value<?>> list = value.get();
+        ImmutableArray.OfInt array;
+        if (list.isEmpty()) {
+            array = ImmutableArray.OfInt.EMPTY;
+        } else if (value.elementType != ValueType.INT) {
+            throw this.listMismatch(key, value, ValueType.INT);
+        } else if (list instanceof CompactList) {
+            array = new ImmutableArray.OfInt((int[]) ((CompactList) list).array);
+        } else {
+            int[] ints = new int[list.size()];
+            for (int i = 0; i < ints.length; i++) {
+                ints[i] = ((IntValue) list.get(i)).intValue;
+            }
+            array = new ImmutableArray.OfInt(ints);
+        }
+        value.cached = array;
+        return array;
+    }
+
+    /**
+     * Reads a list of longs, which may include values small enough to be ints.
+     * The result is cached until the list changes, so reading it again does not allocate.
+     */
+    public ImmutableArray.OfLong getLongArray(String key, long[] defaultValue, String... comment) {
+        ListValue value = this.listValue(key, comment);
+        if (value == null) {
+            value = this.insertList(key, comment, ValueType.LONG, defaultValue.clone(), defaultValue.length);
+        }
+        if (value.cached instanceof ImmutableArray.OfLong) {
+            return (ImmutableArray.OfLong) value.cached;
+        }
+
+        List<Value<?>> list = value.get();
+        ImmutableArray.OfLong array;
+        if (list.isEmpty()) {
+            array = ImmutableArray.OfLong.EMPTY;
+        } else if (list instanceof CompactList && value.elementType == ValueType.LONG) {
+            array = new ImmutableArray.OfLong((long[]) ((CompactList) list).array);
+        } else if (list instanceof CompactList && value.elementType == ValueType.INT) {
+            int[] ints = (int[]) ((CompactList) list).array;
+            long[] longs = new long[ints.length];
+            for (int i = 0; i < longs.length; i++) {
+                longs[i] = ints[i];
+            }
+            array = new ImmutableArray.OfLong(longs);
+        } else {
+            long[] longs = new long[list.size()];
+            for (int i = 0; i < longs.length; i++) {
+                Value<?> element = list.get(i);
+                if (element instanceof LongValue) {
+                    longs[i] = ((LongValue) element).longValue;
+                } else if (element instanceof IntValue) {
+                    longs[i] = ((IntValue) element).intValue;
+                } else {
+                    throw this.listMismatch(key, value, ValueType.LONG);
+                }
+            }
+            array = new ImmutableArray.OfLong(longs);
+        }
+        value.cached = array;
+        return array;
+    }
+
+    /**
+     * Reads a list of doubles. The result is cached until the list changes, so reading it again does not allocate.
+     */
+    public ImmutableArray.OfDouble getDoubleArray(String key, double[] defaultValue, String... comment) {
+        ListValue value = this.listValue(key, comment);
+        if (value == null) {
+            value = this.insertList(key, comment, ValueType.DOUBLE, defaultValue.clone(), defaultValue.length);
+        }
+        if (value.cached instanceof ImmutableArray.OfDouble) {
+            return (ImmutableArray.OfDouble) value.cached;
+        }
+
+        List<Value<?>> list = value.get();
+        ImmutableArray.OfDouble array;
+        if (list.isEmpty()) {
+            array = ImmutableArray.OfDouble.EMPTY;
+        } else if (value.elementType != ValueType.DOUBLE) {
+            throw this.listMismatch(key, value, ValueType.DOUBLE);
+        } else if (list instanceof CompactList) {
+            array = new ImmutableArray.OfDouble((double[]) ((CompactList) list).array);
+        } else {
+            double[] doubles = new double[list.size()];
+            for (int i = 0; i < doubles.length; i++) {
+                doubles[i] = ((DoubleValue) list.get(i)).doubleValue;
+            }
+            array = new ImmutableArray.OfDouble(doubles);
+        }
+        value.cached = array;
+        return array;
+    }
+
+    /**
+     * Reads a list of strings into an unmodifiable list. The result is cached until the list changes, so reading it again does not allocate.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getStringList(String key, List<String> defaultValue, String... comment) {
+        ListValue value = this.listValue(key, comment);
+        if (value == null) {
+            value = this.insertList(key, comment, ValueType.STRING, defaultValue.toArray(new String[0]), defaultValue.size());
+        }
+        if (value.cached instanceof List) {
+            return (List<String>) value.cached;
+        }
+
+        List<Value<?>> list = value.get();
+        List<String> strings;
+        if (list.isEmpty()) {
+            strings = Collections.emptyList();
+        } else if (value.elementType != ValueType.STRING) {
+            throw this.listMismatch(key, value, ValueType.STRING);
+        } else if (list instanceof CompactList) {
+            strings = Collections.unmodifiableList(Arrays.asList((String[]) ((CompactList) list).array));
+        } else {
+            String[] array = new String[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = (String) list.get(i).get();
+            }
+            strings = Collections.unmodifiableList(Arrays.asList(array));
+        }
+        value.cached = strings;
+        return strings;
+    }
+
+    // the list at the key, or null if it does not exist yet
+    private ListValue listValue(String key, String[] comment) {
+        this.metrics.onLookup(key);
+        String[] split = split(key);
+        Value<List<Value<?>>> value = this.lookup(this.section(split[0]), ValueType.LIST, split[1]);
+        if (value != null) {
+            this.comment(value, comment);
+        }
+        return (ListValue) value;
+    }
+
+    private ListValue insertList(String key, String[] comment, ValueType<?> elementType, Object array, int size) {
+        this.metrics.onDefault(key);
+        String[] split = split(key);
+        Value<List<Value<?>>> value = this.insert(this.section(split[0]), ValueType.LIST, split[1], comment);
+        value.set(new CompactList(split[1], elementType, array, size));
+        return (ListValue) value;
+    }
+
+    private IllegalArgumentException listMismatch(String key, ListValue value, ValueType<?> type) {
+        this.metrics.onMismatch(key);
+        return new IllegalArgumentException("Failed to retrieve " + key + " as a list of " + type + " when it contains "
+                + (value.elementType == null ? "mixed types" : value.elementType.toString()));
+    }
+
+    // returns the elements of a list as the requested type, the stored list is returned as it is when no element needs
+    // converting, otherwise a copy holding the converted elements so that the stored nodes and their types never change
+    static List<Value<?>> elements(Value<List<Value<?>>> value, ValueType<?> type) throws IOException {
+        List<Value<?>> list = value.get();
+        if (list instanceof CompactList && ((CompactList) list).elementType == type) {
+            return list;
+        }
+        List<Value<?>> converted = null;
+        for (int i = 0; i < list.size(); i++) {
+            Value<?> element = list.get(i);
+            if (element.type != type) {
+                Value<?> copy = type.convert(element);
+                if (copy == null) {
+                    throw new IOException("Found invalid type " + element.type + " when looking for " + type);
+                }
+                if (converted == null) {
+                    converted = new ArrayList<>(list.size());
+                    converted.addAll(list.subList(0, i));
+                }
+                element = copy;
+            }
+            if (converted != null) {
+                converted.add(element);
+            }
+        }
+        return converted == null ? list : converted;
+    }
+
+    // the values of the elements, read straight from the array of a compact list rather than through a node for each
+    @SuppressWarnings("unchecked")
+    static <T> List<T> values(List<Value<?>> elements) {
+        List<T> values = new ArrayList<>(elements.size());
+        if (elements instanceof CompactList) {
+            CompactList compact = (CompactList) elements;
+            for (int i = 0; i < compact.size(); i++) {
+                values.add((T) compact.value(i));
+            }
+        } else {
+            for (Value<?> element : elements) {
+                values.add((T) element.get());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Creates an object from the values of a section, see {@link #bind(String, Object)}.
+     * Records are created through their canonical constructor, components missing from the section receive zero or null.
+     */
+    public <T> T bind(String section, Class<T> type) {
+        Binding binding = Binding.of(type);
+        if (!binding.record) {
+            T target = type.cast(binding.create());
+            this.bind(section, target);
+            return target;
+        }
+
+        Section node = this.section(section);
+        Binding.Property[] properties = binding.properties;
+        Object[] arguments = new Object[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            Binding.Property property = properties[i];
+            Value<?> value = this.lookupProperty(node, property);
+            arguments[i] = value == null ? property.zero() : property.read(value);
+        }
+        return type.cast(binding.create(arguments));
+    }
+
+    /**
+     * Copies the values of a section into the fields of the object, using the field names as keys.
+     * Values missing from the section are added with the current value of the field and its {@link Comment}, the same way the getters add their defaults.
+     * The fields to copy are worked out once per class, so binding again after a reload costs about as much as copying the fields.
+     */
+    public void bind(String section, Object target) {
+        Binding binding = Binding.of(target.getClass());
+        if (binding.record) {
+            throw new IllegalArgumentException("Unable to bind into record " + target.getClass().getName() + ", use bind(String, Class) instead");
+        }
+
+        Section node = this.section(section);
+        for (Binding.Property property : binding.properties) {
+            Value<?> value = this.lookupProperty(node, property);
+            if (value != null) {
+                property.set(target, value);
+            } else if (!property.isNull(target)) {
+                property.store(target, this.insert(node, property.type, property.key, property.comment));
+            }
+        }
+    }
+
+    /**
+     * Copies the fields of the object back into a section, only marking the values that changed as dirty.
+     * Fields that are null are left out.
+     */
+    public void store(String section, Object source) {
+        this.checkWritable();
+        Binding binding = Binding.of(source.getClass());
+        Section node = this.section(section);
+        for (Binding.Property property : binding.properties) {
+            if (property.isNull(source)) {
+                continue;
+            }
+            Value<?> value = this.lookup(node, property.type, property.key);
+            if (value == null) {
+                property.store(source, this.insert(node, property.type, property.key, property.comment));
+            } else if (property.store(source, value)) {
+                this.markDirty(value);
+            }
+        }
+    }
+
+    private Value<?> lookupProperty(Section section, Binding.Property property) {
+        Value<?> value = this.lookup(section, property.type, property.key);
+        if (value == null) {
+            return null;
+        }
+        this.comment(value, property.comment);
+        if (property.elementType != null) {
+            ListValue list = (ListValue) value;
+            List<Value<?>> elements;
+            try {
+                elements = elements(list, property.elementType);
+            } catch (IOException e) {
+                this.metrics.onMismatch(section.key + "." + property.key);
+                throw new IllegalArgumentException("Failed to bind " + section.key + "." + property.key + ": " + e.getMessage(), e);
+            }
+            if (elements != list.get()) {
+                // a detached list holding the converted elements, the stored one is left as it is
+                Value<List<Value<?>>> converted = ValueType.LIST.create(list.key, list.comments);
+                converted.set(elements);
+                return converted;
             }
         }
-        return list.stream().map(val -> (T) val.value).collect(Collectors.toList());
+        return value;
     }
 
     public <T> void setList(ValueType<T> listType, String key, List<T> value) {
+        this.checkWritable();
         ManualObject object = getObject(ValueType.LIST, key);
         if (!(object instanceof Value)) {
             throw new IllegalArgumentException("Invalid key for value " + key);
         }
-        ((Value<List<Value<T>>>) object).value = value.stream().map(val -> new Value<T>(listType, null, val, null)).collect(Collectors.toList());
+        ((ListValue) object).set(CompactList.copyOf(object.key, listType, value));
+        this.markDirty(object);
     }
 
+    @SuppressWarnings("unchecked")
     public <T> void set(ValueType<T> type, String key, T value) {
+        this.checkWritable();
         ManualObject object = getObject(type, key);
         if (!(object instanceof Value)) {
             throw new IllegalArgumentException("Invalid key for value " + key);
         }
-        ((Value) object).value = value;
+        ((Value<T>) object).set(value);
+        this.markDirty(object);
     }
 
 }
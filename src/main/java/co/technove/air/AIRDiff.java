@@ -0,0 +1,106 @@
+package co.technove.air;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The values that differ between two {@link AIRSnapshot}s.
+ */
+public final class AIRDiff {
+    static final AIRDiff EMPTY = new AIRDiff(Collections.emptyList());
+
+    private final List<Change> changes;
+
+    AIRDiff(List<Change> changes) {
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    public static AIRDiff between(AIRSnapshot before, AIRSnapshot after) {
+        List<Change> changes = new ArrayList<>();
+        for (int i = 0; i < after.size(); i++) {
+            String key = after.key(i);
+            int index = before.indexOf(key);
+            if (index == -1) {
+                changes.add(new Change(key, after.section(i), null, after.value(i)));
+            } else if (before.type(index) != after.type(i) || !Objects.equals(before.value(index), after.value(i))) {
+                changes.add(new Change(key, after.section(i), before.value(index), after.value(i)));
+            }
+        }
+        for (int i = 0; i < before.size(); i++) {
+            if (after.indexOf(before.key(i)) == -1) {
+                changes.add(new Change(before.key(i), before.section(i), before.value(i), null));
+            }
+        }
+        return changes.isEmpty() ? EMPTY : new AIRDiff(changes);
+    }
+
+    // the value as a snapshot holds it, lists as an immutable list of their elements
+    static Object valueOf(AIR.Value<?> value) {
+        if (value == null) {
+            return null;
+        } else if (value.type != ValueType.LIST) {
+            return value.get();
+        }
+        List<AIR.Value<?>> list = value.get() == null ? Collections.emptyList() : ((AIR.ListValue) value).get();
+        return Collections.unmodifiableList(AIR.values(list));
+    }
+
+    public List<Change> getChanges() {
+        return this.changes;
+    }
+
+    public boolean isEmpty() {
+        return this.changes.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return this.changes.toString();
+    }
+
+    public static final class Change {
+        private final String key;
+        private final String section;
+        private final Object oldValue;
+        private final Object newValue;
+
+        Change(String key, String section, Object oldValue, Object newValue) {
+            this.key = key;
+            this.section = section;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        /**
+         * The full key of the value, including its section.
+         */
+        public String getKey() {
+            return this.key;
+        }
+
+        public String getSection() {
+            return this.section;
+        }
+
+        /**
+         * The previous value, or null if it was added.
+         */
+        public Object getOldValue() {
+            return this.oldValue;
+        }
+
+        /**
+         * The new value, or null if it was removed.
+         */
+        public Object getNewValue() {
+            return this.newValue;
+        }
+
+        @Override
+        public String toString() {
+            return this.key + ": " + this.oldValue + " -> " + this.newValue;
+        }
+    }
+}
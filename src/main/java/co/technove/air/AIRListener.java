@@ -0,0 +1,6 @@
+package co.technove.air;
+
+@FunctionalInterface
+public interface AIRListener {
+    void onChange(AIRDiff diff);
+}
@@ -0,0 +1,40 @@
+package co.technove.air;
+
+/**
+ * Receives measurements of how an {@link AIR} is used, see {@link AIR#setMetrics(AIRMetrics)}.
+ * Every method does nothing by default, {@link CountingMetrics} counts everything.
+ */
+public interface AIRMetrics {
+    /**
+     * Records nothing, and is what every configuration uses until told otherwise.
+     */
+    AIRMetrics NOOP = new AIRMetrics() {
+    };
+
+    /**
+     * A configuration was loaded or reloaded, lazily loaded sections are counted when they are indexed.
+     */
+    default void onParse(long nanos, long bytes) {
+    }
+
+    default void onSave(long nanos, long bytes) {
+    }
+
+    /**
+     * A value was requested through one of the getters by its full key.
+     */
+    default void onLookup(String key) {
+    }
+
+    /**
+     * A requested value did not exist, so the default was used.
+     */
+    default void onDefault(String key) {
+    }
+
+    /**
+     * A requested value exists with a type that cannot be read as the requested one.
+     */
+    default void onMismatch(String key) {
+    }
+}
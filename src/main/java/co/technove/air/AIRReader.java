@@ -0,0 +1,360 @@
+package co.technove.air;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Reads a configuration one event at a time without building a tree, holding no more than a single line in memory.
+ * Use {@link #next()} to pull events, or {@link #read(Handler)} to have them pushed to a handler.
+ */
+public class AIRReader implements Closeable {
+
+    public enum Event {
+        COMMENT,
+        SECTION,
+        VALUE,
+        LIST_START,
+        LIST_ITEM,
+        LIST_END,
+    }
+
+    public interface Handler {
+        default void onComment(String comment) {
+        }
+
+        default void onSection(String name) {
+        }
+
+        /**
+         * The value can be read through the typed getters of the reader.
+         */
+        default void onValue(String key, AIRReader reader) {
+        }
+
+        default void onListStart(String key) {
+        }
+
+        default void onListItem(String key, AIRReader reader) {
+        }
+
+        default void onListEnd(String key) {
+        }
+    }
+
+    private final Reader source;
+    private char[] buf;
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    private boolean inSection;
+    private String listKey;
+
+    private Event event;
+    private String text;
+    private AIR.Value<?> value;
+
+    /**
+     * Reads a UTF-8 encoded configuration.
+     */
+    public AIRReader(InputStream stream) {
+        this(stream, StandardCharsets.UTF_8);
+    }
+
+    public AIRReader(InputStream stream, Charset charset) {
+        this(new InputStreamReader(stream, charset));
+    }
+
+    public AIRReader(Reader reader) {
+        this.source = reader;
+        this.buf = new char[8192];
+    }
+
+    // reads from memory, when inSection is set the input is the body of a section and may not contain any sections
+    AIRReader(char[] buf, int offset, int end, boolean inSection) {
+        this.source = null;
+        this.buf = buf;
+        this.position = offset;
+        this.limit = end;
+        this.eof = true;
+        this.inSection = inSection;
+    }
+
+    /**
+     * Reads until the end of the input, passing every event to the handler.
+     */
+    public void read(Handler handler) throws IOException {
+        Event event;
+        while ((event = this.next()) != null) {
+            switch (event) {
+                case COMMENT:
+                    handler.onComment(this.text);
+                    break;
+                case SECTION:
+                    handler.onSection(this.text);
+                    break;
+                case VALUE:
+                    handler.onValue(this.text, this);
+                    break;
+                case LIST_START:
+                    handler.onListStart(this.text);
+                    break;
+                case LIST_ITEM:
+                    handler.onListItem(this.text, this);
+                    break;
+                case LIST_END:
+                    handler.onListEnd(this.text);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Moves to the next event, returning null once the end of the input is reached.
+     */
+    public Event next() throws IOException {
+        this.event = null;
+        this.text = null;
+        this.value = null;
+
+        int lineEnd;
+        while ((lineEnd = this.nextLine()) != -1) {
+            int start = this.position;
+            int end = lineEnd;
+            this.position = lineEnd + 1;
+
+            // trim the same way String#trim would
+            char[] buf = this.buf;
+            while (start < end && buf[start] <= ' ') {
+                start++;
+            }
+            while (end > start && buf[end - 1] <= ' ') {
+                end--;
+            }
+
+            if (start == end) {
+                continue; // empty line
+            }
+
+            char first = buf[start];
+            if (first == '#') {
+                int commentStart = start + 1;
+                while (commentStart < end && buf[commentStart] <= ' ') {
+                    commentStart++;
+                }
+                this.text = new String(buf, commentStart, end - commentStart);
+                return this.event = Event.COMMENT;
+            } else if (first == '[') {
+                if (buf[end - 1] != ']') {
+                    throw new IllegalArgumentException("Invalid configuration, section '" + new String(buf, start, end - start) + "' does not end with ]");
+                }
+                if (end - start < 3) {
+                    throw new IllegalArgumentException("Invalid configuration, section '" + new String(buf, start, end - start) + "' does not have a name");
+                }
+                this.inSection = true;
+                this.text = new String(buf, start + 1, end - start - 2);
+                return this.event = Event.SECTION;
+            }
+
+            if (!this.inSection) {
+                throw new IllegalArgumentException("Invalid configuration, found value outside of section " + new String(buf, start, end - start));
+            }
+            int valueStart;
+            int valueEnd;
+
+            if (this.listKey == null) {
+                int equals = start;
+                while (equals < end && buf[equals] != '=') {
+                    equals++;
+                }
+                if (equals == end || equals - start <= 1 || equals == end - 1) {
+                    throw new IllegalArgumentException("Invalid configuration, assignment invalid " + new String(buf, start, end - start));
+                }
+
+                int keyEnd = equals;
+                while (keyEnd > start && buf[keyEnd - 1] <= ' ') {
+                    keyEnd--;
+                }
+                this.text = new String(buf, start, keyEnd - start);
+                valueStart = equals + 1;
+                valueEnd = end;
+                while (valueStart < valueEnd && buf[valueStart] <= ' ') {
+                    valueStart++;
+                }
+
+                if (valueStart == valueEnd) {
+                    throw new IllegalArgumentException("Invalid configuration, value does not exist " + new String(buf, start, end - start));
+                }
+                if (valueEnd - valueStart == 1 && buf[valueStart] == '[') {
+                    this.listKey = this.text;
+                    return this.event = Event.LIST_START;
+                }
+                this.event = Event.VALUE;
+            } else {
+                this.text = this.listKey;
+                valueStart = start;
+                valueEnd = end;
+
+                if (end - start == 1 && first == ']') {
+                    this.listKey = null;
+                    return this.event = Event.LIST_END;
+                }
+
+                if (buf[valueEnd - 1] == ',') {
+                    valueEnd--;
+                }
+                this.event = Event.LIST_ITEM;
+            }
+
+            this.value = ValueType.read(this.text, buf, valueStart, valueEnd, Collections.emptyList());
+            if (this.value == null) {
+                throw new IllegalArgumentException("Invalid configuration, unknown type for " + new String(buf, start, end - start));
+            }
+            return this.event;
+        }
+        return null;
+    }
+
+    // returns the end of the line starting at the current position, refilling the buffer as needed, or -1 at the end of the input
+    private int nextLine() throws IOException {
+        int scanned = this.position;
+        while (true) {
+            for (int i = scanned; i < this.limit; i++) {
+                char c = this.buf[i];
+                if (c == '\n' || c == '\r') {
+                    return i;
+                }
+            }
+            if (this.eof) {
+                return this.position < this.limit ? this.limit : -1;
+            }
+
+            // keep the partial line and read more after it
+            scanned = this.limit - this.position;
+            if (this.position > 0) {
+                System.arraycopy(this.buf, this.position, this.buf, 0, scanned);
+            } else if (this.limit == this.buf.length) {
+                this.buf = Arrays.copyOf(this.buf, this.buf.length * 2);
+            }
+            this.position = 0;
+            this.limit = scanned;
+            int read = this.source.read(this.buf, this.limit, this.buf.length - this.limit);
+            if (read == -1) {
+                this.eof = true;
+            } else {
+                this.limit += read;
+            }
+        }
+    }
+
+    public Event getEvent() {
+        return this.event;
+    }
+
+    /**
+     * The text of the current {@link Event#COMMENT}.
+     */
+    public String getComment() {
+        this.require(Event.COMMENT);
+        return this.text;
+    }
+
+    /**
+     * The name of the current {@link Event#SECTION}.
+     */
+    public String getSection() {
+        this.require(Event.SECTION);
+        return this.text;
+    }
+
+    /**
+     * The key of the current value, or of the list the current event belongs to.
+     */
+    public String getKey() {
+        if (this.event != Event.VALUE && this.event != Event.LIST_START && this.event != Event.LIST_ITEM && this.event != Event.LIST_END) {
+            throw new IllegalStateException("Current event " + this.event + " does not have a key");
+        }
+        return this.text;
+    }
+
+    public ValueType<?> getType() {
+        return this.value().type;
+    }
+
+    public int getInt() {
+        AIR.Value<?> value = this.value();
+        if (value instanceof AIR.IntValue) {
+            return ((AIR.IntValue) value).intValue;
+        }
+        throw new IllegalStateException("Current value is of type " + value.type + ", not " + ValueType.INT);
+    }
+
+    public long getLong() {
+        AIR.Value<?> value = this.value();
+        if (value instanceof AIR.LongValue) {
+            return ((AIR.LongValue) value).longValue;
+        } else if (value instanceof AIR.IntValue) {
+            return ((AIR.IntValue) value).intValue;
+        }
+        throw new IllegalStateException("Current value is of type " + value.type + ", not " + ValueType.LONG);
+    }
+
+    public double getDouble() {
+        AIR.Value<?> value = this.value();
+        if (value instanceof AIR.DoubleValue) {
+            return ((AIR.DoubleValue) value).doubleValue;
+        }
+        throw new IllegalStateException("Current value is of type " + value.type + ", not " + ValueType.DOUBLE);
+    }
+
+    public boolean getBoolean() {
+        AIR.Value<?> value = this.value();
+        if (value instanceof AIR.BooleanValue) {
+            return ((AIR.BooleanValue) value).booleanValue;
+        }
+        throw new IllegalStateException("Current value is of type " + value.type + ", not " + ValueType.BOOL);
+    }
+
+    public String getString() {
+        AIR.Value<?> value = this.value();
+        if (value.type == ValueType.STRING) {
+            return (String) value.get();
+        }
+        throw new IllegalStateException("Current value is of type " + value.type + ", not " + ValueType.STRING);
+    }
+
+    /**
+     * The current value, boxed if it is a primitive.
+     */
+    public Object getValue() {
+        return this.value().get();
+    }
+
+    // the parsed value of the current event, the reader does not keep it after moving on
+    AIR.Value<?> value() {
+        if (this.value == null) {
+            throw new IllegalStateException("Current event " + this.event + " does not have a value");
+        }
+        return this.value;
+    }
+
+    private void require(Event event) {
+        if (this.event != event) {
+            throw new IllegalStateException("Current event is " + this.event + ", not " + event);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.source != null) {
+            this.source.close();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package co.technove.air;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a configuration file and the files it includes, and reloads it in the background whenever one of them changes.
+ * Included files that did not change are not parsed again. Readers get the current values through {@link #snapshot()}, which is swapped atomically after each reload.
+ */
+public class AIRReloader implements Closeable {
+    private final Path path;
+    private final long debounceNanos;
+    private final WatchService watchService;
+    private final ScheduledExecutorService executor;
+    private final Thread watcher;
+    // the file and every file it included in any reload so far
+    private final Set<Path> files = ConcurrentHashMap.newKeySet();
+
+    private final List<AIRListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, List<AIRListener>> sectionListeners = new ConcurrentHashMap<>();
+    private final Map<String, List<AIRListener>> keyListeners = new ConcurrentHashMap<>();
+    private final Consumer<Exception> errorHandler;
+
+    private volatile AIRSnapshot snapshot;
+    private ScheduledFuture<?> pending;
+
+    public AIRReloader(Path path, Consumer<Exception> errorHandler) throws IOException {
+        this(path, Duration.ofMillis(100), errorHandler);
+    }
+
+    /**
+     * @param debounce how long to wait for the file to stop changing before reloading it
+     * @param errorHandler handles failures to reload in the background, the previous snapshot stays in use when a reload fails
+     */
+    public AIRReloader(Path path, Duration debounce, Consumer<Exception> errorHandler) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.debounceNanos = debounce.toNanos();
+        this.errorHandler = Objects.requireNonNull(errorHandler);
+        this.watchService = this.path.getFileSystem().newWatchService();
+        AIR air = AIR.load(this.path);
+        this.register(air);
+        this.snapshot = air.freeze();
+
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AIR reloader - " + this.path.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watcher = new Thread(this::watch, "AIR watcher - " + this.path.getFileName());
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = this.watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || this.files.contains(((Path) key.watchable()).resolve((Path) event.context()))) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    this.schedule();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    // watches the directories of the file and of everything it includes
+    private void register(AIR air) throws IOException {
+        List<Path> files = new ArrayList<>();
+        files.add(this.path);
+        files.addAll(air.getIncludes());
+        for (Path file : files) {
+            if (this.files.add(file)) {
+                file.getParent().register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+    }
+
+    private synchronized void schedule() {
+        if (this.pending != null) {
+            this.pending.cancel(false);
+        }
+        this.pending = this.executor.schedule(() -> {
+            try {
+                this.reload();
+            } catch (IOException | RuntimeException e) {
+                this.errorHandler.accept(e);
+            }
+        }, this.debounceNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Reloads the file right away on the calling thread and notifies listeners of anything that changed.
+     */
+    public synchronized void reload() throws IOException {
+        AIRSnapshot previous = this.snapshot;
+        AIR air = AIR.load(this.path);
+        this.register(air);
+        AIRSnapshot current = air.freeze();
+        this.snapshot = current;
+        this.dispatch(AIRDiff.between(previous, current));
+    }
+
+    private void dispatch(AIRDiff diff) {
+        if (diff.isEmpty()) {
+            return;
+        }
+        for (AIRListener listener : this.listeners) {
+            listener.onChange(diff);
+        }
+        if (!this.sectionListeners.isEmpty()) {
+            Map<String, List<AIRDiff.Change>> bySection = new LinkedHashMap<>();
+            for (AIRDiff.Change change : diff.getChanges()) {
+                if (this.sectionListeners.containsKey(change.getSection())) {
+                    bySection.computeIfAbsent(change.getSection(), k -> new ArrayList<>()).add(change);
+                }
+            }
+            for (Map.Entry<String, List<AIRDiff.Change>> entry : bySection.entrySet()) {
+                AIRDiff sectionDiff = new AIRDiff(entry.getValue());
+                for (AIRListener listener : this.sectionListeners.get(entry.getKey())) {
+                    listener.onChange(sectionDiff);
+                }
+            }
+        }
+        if (!this.keyListeners.isEmpty()) {
+            for (AIRDiff.Change change : diff.getChanges()) {
+                List<AIRListener> listeners = this.keyListeners.get(change.getKey());
+                if (listeners != null) {
+                    AIRDiff keyDiff = new AIRDiff(Collections.singletonList(change));
+                    for (AIRListener listener : listeners) {
+                        listener.onChange(keyDiff);
+                    }
+                }
+            }
+        }
+    }
+
+    public AIRSnapshot snapshot() {
+        return this.snapshot;
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Listens for every change to the file.
+     */
+    public void addListener(AIRListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Listens for changes to a single section, or to a single value if the key includes a section.
+     * The listener only receives the changes that match.
+     */
+    public void addListener(String key, AIRListener listener) {
+        Map<String, List<AIRListener>> listeners = key.indexOf('.') == -1 ? this.sectionListeners : this.keyListeners;
+        listeners.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    public void removeListener(AIRListener listener) {
+        this.listeners.remove(listener);
+        this.sectionListeners.values().forEach(list -> list.remove(listener));
+        this.keyListeners.values().forEach(list -> list.remove(listener));
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.watchService.close();
+        this.executor.shutdownNow();
+    }
+}
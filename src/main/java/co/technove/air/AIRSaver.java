@@ -0,0 +1,123 @@
+package co.technove.air;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Saves a configuration in the background whenever it is changed through {@link AIR#edit(Consumer)}, so that the
+ * threads making the changes never wait on the disk. A burst of edits is written once the configuration stops changing
+ * for the debounce delay, or at the latest ten delays after the first unsaved edit.
+ * <p>
+ * Close the saver to write anything still pending.
+ */
+public class AIRSaver implements Closeable {
+    private final AIR air;
+    private final Path path;
+    private final long debounceNanos;
+    private final ScheduledExecutorService executor;
+    private final AIRListener listener = diff -> this.schedule();
+    // held while writing, so that an older save can never replace a newer one
+    private final Object writeLock = new Object();
+    private final Consumer<Exception> errorHandler;
+
+    private ScheduledFuture<?> pending;
+    private long firstPending;
+
+    public AIRSaver(AIR air, Path path, Consumer<Exception> errorHandler) {
+        this(air, path, Duration.ofMillis(100), errorHandler);
+    }
+
+    /**
+     * @param debounce how long to wait for the configuration to stop changing before saving it
+     * @param errorHandler handles failures to save in the background, the changes are saved again with the next edit
+     */
+    public AIRSaver(AIR air, Path path, Duration debounce, Consumer<Exception> errorHandler) {
+        air.checkWritable();
+        this.air = air;
+        this.path = path.toAbsolutePath();
+        this.debounceNanos = debounce.toNanos();
+        this.errorHandler = Objects.requireNonNull(errorHandler);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AIR saver - " + this.path.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        air.addListener(this.listener);
+    }
+
+    /**
+     * Saves after the debounce delay. Edits are scheduled automatically, call this after changing the configuration any other way.
+     */
+    public synchronized void schedule() {
+        long now = System.nanoTime();
+        long delay = this.debounceNanos;
+        if (this.pending == null) {
+            this.firstPending = now;
+        } else {
+            this.pending.cancel(false);
+            // edits that never pause are still written once the first of them has waited long enough
+            delay = Math.max(0, Math.min(delay, this.firstPending + this.debounceNanos * 10 - now));
+        }
+        this.pending = this.executor.schedule(() -> {
+            try {
+                this.flush();
+            } catch (IOException | RuntimeException e) {
+                this.errorHandler.accept(e);
+            }
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Saves any unsaved changes right away on the calling thread, including those to included files.
+     *
+     * @return whether any file was written
+     */
+    public boolean flush() throws IOException {
+        synchronized (this) {
+            if (this.pending != null) {
+                this.pending.cancel(false);
+                this.pending = null;
+            }
+        }
+        synchronized (this.writeLock) {
+            Map<Path, ByteBuffer> files = this.air.prepareSave(this.path);
+            try {
+                for (Map.Entry<Path, ByteBuffer> file : files.entrySet()) {
+                    AIR.writeAtomically(file.getKey(), file.getValue());
+                }
+            } catch (IOException | RuntimeException e) {
+                this.air.saveFailed();
+                throw e;
+            }
+            return !files.isEmpty();
+        }
+    }
+
+    public AIR getAIR() {
+        return this.air;
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.air.removeListener(this.listener);
+        try {
+            this.flush();
+        } finally {
+            this.executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package co.technove.air;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of the values of an {@link AIR}, created through {@link AIR#freeze()}.
+ * Values are kept in flat arrays behind an open addressing index on the full key, so reads from any number of
+ * threads need no locking, and do not allocate unless a value is read as another type.
+ */
+public final class AIRSnapshot {
+    static final AIRSnapshot EMPTY = new AIRSnapshot(new String[0], new String[0], new ValueType<?>[0], new long[0], new Object[0], new ValueType<?>[0], new ValueType<?>[0][]);
+
+    // in the order of the configuration
+    private final String[] keys;
+    private final String[] sections;
+    private final ValueType<?>[] types;
+    // payload of INT, LONG, DOUBLE and BOOL values
+    private final long[] primitives;
+    // payload of every other value, lists are stored as an immutable list of their elements
+    private final Object[] objects;
+    // element type of lists, null when the list is empty or mixed
+    private final ValueType<?>[] elementTypes;
+    // the type of every element of mixed lists, null for every other value
+    private final ValueType<?>[][] mixedTypes;
+
+    private final String[] table;
+    private final int[] slots;
+    private final int mask;
+
+    private AIRSnapshot(String[] keys, String[] sections, ValueType<?>[] types, long[] primitives, Object[] objects, ValueType<?>[] elementTypes, ValueType<?>[][] mixedTypes) {
+        this.keys = keys;
+        this.sections = sections;
+        this.types = types;
+        this.primitives = primitives;
+        this.objects = objects;
+        this.elementTypes = elementTypes;
+        this.mixedTypes = mixedTypes;
+
+        int capacity = Integer.highestOneBit(Math.max(2, keys.length * 2 - 1)) << 1;
+        this.table = new String[capacity];
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < keys.length; i++) {
+            int slot = hash(keys[i]) & this.mask;
+            while (this.table[slot] != null) {
+                slot = (slot + 1) & this.mask;
+            }
+            this.table[slot] = keys[i];
+            this.slots[slot] = i;
+        }
+    }
+
+    static AIRSnapshot of(List<AIR.Value<?>> values) {
+        String[] keys = new String[values.size()];
+        String[] sections = new String[keys.length];
+        ValueType<?>[] types = new ValueType<?>[keys.length];
+        long[] primitives = new long[keys.length];
+        Object[] objects = new Object[keys.length];
+        ValueType<?>[] elementTypes = new ValueType<?>[keys.length];
+        ValueType<?>[][] mixedTypes = new ValueType<?>[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            AIR.Value<?> value = values.get(i);
+            sections[i] = value.parent.key;
+            keys[i] = sections[i] + "." + value.key;
+            types[i] = value.type;
+            if (value instanceof AIR.IntValue) {
+                primitives[i] = ((AIR.IntValue) value).intValue;
+            } else if (value instanceof AIR.LongValue) {
+                primitives[i] = ((AIR.LongValue) value).longValue;
+            } else if (value instanceof AIR.DoubleValue) {
+                primitives[i] = Double.doubleToRawLongBits(((AIR.DoubleValue) value).doubleValue);
+            } else if (value instanceof AIR.BooleanValue) {
+                primitives[i] = ((AIR.BooleanValue) value).booleanValue ? 1 : 0;
+            } else if (value.type == ValueType.LIST) {
+                List<AIR.Value<?>> list = value.get() == null ? Collections.emptyList() : ((AIR.ListValue) value).get();
+                Object[] elements = new Object[list.size()];
+                ValueType<?>[] listTypes = new ValueType<?>[elements.length];
+                elementTypes[i] = list.isEmpty() ? null : list.get(0).type;
+                for (int j = 0; j < elements.length; j++) {
+                    AIR.Value<?> element = list.get(j);
+                    if (element.type != elementTypes[i]) {
+                        elementTypes[i] = null;
+                        mixedTypes[i] = listTypes;
+                    }
+                    listTypes[j] = element.type;
+                    elements[j] = element.get();
+                }
+                objects[i] = Collections.unmodifiableList(Arrays.asList(elements));
+            } else {
+                objects[i] = value.get();
+            }
+        }
+        return new AIRSnapshot(keys, sections, types, primitives, objects, elementTypes, mixedTypes);
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // returns the index of the key, or -1 if it does not exist
+    int indexOf(String key) {
+        int slot = hash(key) & this.mask;
+        String found;
+        while ((found = this.table[slot]) != null) {
+            if (found == key || found.equals(key)) {
+                return this.slots[slot];
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    private int indexOf(String key, ValueType<?> type) {
+        int index = this.indexOf(key);
+        if (index != -1 && this.types[index] != type) {
+            throw mismatch(key, this.types[index], type);
+        }
+        return index;
+    }
+
+    private static IllegalArgumentException mismatch(String key, ValueType<?> type, ValueType<?> requested) {
+        return new IllegalArgumentException("Failed to retrieve " + key + " because it exists with type " + type + " when requested type is " + requested);
+    }
+
+    int size() {
+        return this.keys.length;
+    }
+
+    String key(int index) {
+        return this.keys[index];
+    }
+
+    String section(int index) {
+        return this.sections[index];
+    }
+
+    ValueType<?> type(int index) {
+        return this.types[index];
+    }
+
+    Object value(int index) {
+        ValueType<?> type = this.types[index];
+        long primitive = this.primitives[index];
+        if (type == ValueType.INT) {
+            return (int) primitive;
+        } else if (type == ValueType.LONG) {
+            return primitive;
+        } else if (type == ValueType.DOUBLE) {
+            return Double.longBitsToDouble(primitive);
+        } else if (type == ValueType.BOOL) {
+            return primitive != 0;
+        }
+        return this.objects[index];
+    }
+
+    public boolean contains(String key) {
+        return this.indexOf(key) != -1;
+    }
+
+    public List<String> getKeys() {
+        return Collections.unmodifiableList(Arrays.asList(this.keys));
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        int index = this.indexOf(key, ValueType.BOOL);
+        return index == -1 ? defaultValue : this.primitives[index] != 0;
+    }
+
+    public int getInt(String key, int defaultValue) {
+        int index = this.indexOf(key, ValueType.INT);
+        return index == -1 ? defaultValue : (int) this.primitives[index];
+    }
+
+    public long getLong(String key, long defaultValue) {
+        int index = this.indexOf(key);
+        if (index == -1) {
+            return defaultValue;
+        }
+        if (this.types[index] != ValueType.LONG && this.types[index] != ValueType.INT) {
+            throw mismatch(key, this.types[index], ValueType.LONG);
+        }
+        return this.primitives[index];
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        int index = this.indexOf(key, ValueType.DOUBLE);
+        return index == -1 ? defaultValue : Double.longBitsToDouble(this.primitives[index]);
+    }
+
+    public String getString(String key, String defaultValue) {
+        return this.get(key, ValueType.STRING, defaultValue);
+    }
+
+    /**
+     * Elements are converted the same way {@link AIR#getList(String, ValueType, List, String...)} converts them, into a new list
+     * each time as the snapshot itself never changes.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getList(String key, ValueType<T> type, List<T> defaultValue) throws IOException {
+        int index = this.indexOf(key, ValueType.LIST);
+        if (index == -1) {
+            return defaultValue;
+        }
+        List<?> list = (List<?>) this.objects[index];
+        if (list.isEmpty() || this.elementTypes[index] == type) {
+            return (List<T>) list;
+        }
+        Object[] elements = new Object[list.size()];
+        for (int i = 0; i < elements.length; i++) {
+            ValueType<?> elementType = this.elementTypes[index] != null ? this.elementTypes[index] : this.mixedTypes[index][i];
+            if (elementType == type) {
+                elements[i] = list.get(i);
+                continue;
+            }
+            AIR.Value<T> converted = convert(key, elementType, list.get(i), type);
+            if (converted == null) {
+                throw new IOException("Found invalid type " + elementType + " when looking for " + type);
+            }
+            elements[i] = converted.get();
+        }
+        return Collections.unmodifiableList(Arrays.asList((T[]) elements));
+    }
+
+    /**
+     * Values of another type are converted the same way {@link AIR#get(String, ValueType, Object, String...)} converts them,
+     * for example ints read as longs and strings read as a {@link ValueType.TextType}, and parsed again on every read.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, ValueType<T> type, T defaultValue) {
+        int index = this.indexOf(key);
+        if (index == -1) {
+            return defaultValue;
+        } else if (this.types[index] == type) {
+            return (T) this.value(index);
+        }
+        AIR.Value<T> converted = convert(key, this.types[index], this.value(index), type);
+        if (converted == null) {
+            throw mismatch(key, this.types[index], type);
+        }
+        return converted.get();
+    }
+
+    // the value as the requested type, or null if it cannot be read as it
+    @SuppressWarnings("unchecked")
+    private static <T> AIR.Value<T> convert(String key, ValueType<?> stored, Object value, ValueType<T> type) {
+        if (stored == ValueType.LIST) {
+            return null;
+        }
+        AIR.Value<Object> node = (AIR.Value<Object>) stored.create(key, Collections.emptyList());
+        node.set(value);
+        return type.convert(node);
+    }
+}
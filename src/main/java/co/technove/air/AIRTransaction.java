@@ -0,0 +1,56 @@
+package co.technove.air;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * A batch of changes collected by {@link AIR#edit(Consumer)}.
+ * Nothing is applied until the batch completes, and then either every change is applied or none are.
+ * Values, list elements and comments may not be null.
+ */
+public final class AIRTransaction {
+    final List<Change> changes = new ArrayList<>();
+
+    AIRTransaction() {
+    }
+
+    public <T> AIRTransaction set(ValueType<T> type, String key, T value) {
+        Objects.requireNonNull(value, key);
+        this.changes.add(new Change(type, key, air -> air.set(type, key, value)));
+        return this;
+    }
+
+    public <T> AIRTransaction setList(ValueType<T> listType, String key, List<T> value) {
+        List<T> copy = new ArrayList<>(value);
+        for (T element : copy) {
+            Objects.requireNonNull(element, key);
+        }
+        this.changes.add(new Change(ValueType.LIST, key, air -> air.setList(listType, key, copy)));
+        return this;
+    }
+
+    public AIRTransaction setComment(String key, String... comment) {
+        String[] copy = Arrays.copyOf(comment, comment.length);
+        for (String line : copy) {
+            Objects.requireNonNull(line, key);
+        }
+        this.changes.add(new Change(null, key, air -> air.setComment(key, copy)));
+        return this;
+    }
+
+    static final class Change {
+        // null for comments, which can be set on anything
+        final ValueType<?> type;
+        final String key;
+        final Consumer<AIR> apply;
+
+        Change(ValueType<?> type, String key, Consumer<AIR> apply) {
+            this.type = type;
+            this.key = key;
+            this.apply = apply;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package co.technove.air;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Parsed copy of a configuration file kept next to it, see {@link LoadOption#CACHE}.
+ * <p>
+ * The layout is big endian and length prefixed: a header with the magic, version and the size, modification time and
+ * CRC32 of the text it was created from, and whether that modification time was too recent to be trusted, followed by
+ * the sections. Strings are an int byte length followed by UTF-8.
+ * <pre>
+ * section: key, comment count, comments, value count, values
+ * value:   key, comment count, comments, tag, payload
+ * list:    element count, then a tag and payload per element
+ * custom:  name of the registered type, then the value as it is written in the configuration
+ * </pre>
+ */
+final class BinaryCache {
+    private static final int MAGIC = 0x41495242; // AIRB
+    private static final int VERSION = 2;
+
+    private static final byte BOOL = 0;
+    private static final byte INT = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte STRING = 4;
+    private static final byte LIST = 5;
+    private static final byte CUSTOM = 6;
+
+    final long size;
+    final long modified;
+    final int hash;
+    // the file was written too shortly before the cache to tell a later change from its modification time, see Fragment
+    final boolean racy;
+
+    private final ByteBuffer buffer;
+
+    private BinaryCache(long size, long modified, int hash, boolean racy, ByteBuffer buffer) {
+        this.size = size;
+        this.modified = modified;
+        this.hash = hash;
+        this.racy = racy;
+        this.buffer = buffer;
+    }
+
+    static boolean racy(long modified) {
+        return System.currentTimeMillis() - modified < Fragment.Cached.RESOLUTION;
+    }
+
+    static Path pathFor(Path path) {
+        return path.resolveSibling(path.getFileName() + ".bin");
+    }
+
+    static int hash(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads the header of the cache, returning null if it does not exist or was written by a different version.
+     */
+    static BinaryCache open(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < 33 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        return new BinaryCache(buffer.getLong(), buffer.getLong(), buffer.getInt(), buffer.get() != 0, buffer);
+    }
+
+    void read(Map<String, AIR.Section> sections) throws IOException {
+        try {
+            // a section has at least a key length, comment count and value count
+            int sectionCount = this.count(12);
+            for (int i = 0; i < sectionCount; i++) {
+                AIR.Section section = new AIR.Section(this.string(), this.comments());
+                // a value has at least a key length, comment count and tag
+                int valueCount = this.count(9);
+                for (int j = 0; j < valueCount; j++) {
+                    String key = this.string();
+                    AIR.Value<?> value = this.value(key, this.comments());
+                    section.add(key, value);
+                }
+                sections.put(section.key, section);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Binary cache is truncated", e);
+        } catch (RuntimeException e) {
+            throw new IOException("Binary cache is corrupt", e);
+        }
+    }
+
+    // reads a count or length, checking that the rest of the cache can hold that many entries of at least the given size
+    private int count(int minimumSize) throws IOException {
+        int count = this.buffer.getInt();
+        if (count < 0 || (long) count * minimumSize > this.buffer.remaining()) {
+            throw new IOException("Binary cache is corrupt, found a length of " + count + " with " + this.buffer.remaining() + " bytes left");
+        }
+        return count;
+    }
+
+    private AIR.Value<?> value(String key, List<String> comments) throws IOException {
+        ByteBuffer buffer = this.buffer;
+        byte tag = buffer.get();
+        switch (tag) {
+            case BOOL: {
+                AIR.BooleanValue value = (AIR.BooleanValue) ValueType.BOOL.create(key, comments);
+                value.booleanValue = buffer.get() != 0;
+                return value;
+            }
+            case INT: {
+                AIR.IntValue value = (AIR.IntValue) ValueType.INT.create(key, comments);
+                value.intValue = buffer.getInt();
+                return value;
+            }
+            case LONG: {
+                AIR.LongValue value = (AIR.LongValue) ValueType.LONG.create(key, comments);
+                value.longValue = buffer.getLong();
+                return value;
+            }
+            case DOUBLE: {
+                AIR.DoubleValue value = (AIR.DoubleValue) ValueType.DOUBLE.create(key, comments);
+                value.doubleValue = buffer.getDouble();
+                return value;
+            }
+            case STRING: {
+                AIR.Value<String> value = ValueType.STRING.create(key, comments);
+                value.set(this.string());
+                return value;
+            }
+            case LIST: {
+                int count = this.count(1);
+                List<AIR.Value<?>> elements = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    elements.add(this.value(key, new ArrayList<>()));
+                }
+                AIR.Value<List<AIR.Value<?>>> value = ValueType.LIST.create(key, comments);
+                value.set(elements);
+                return value;
+            }
+            case CUSTOM: {
+                String name = this.string();
+                String text = this.string();
+                ValueType<?> type = ValueType.byName(name);
+                // a type that is not registered yet in this process makes the cache a miss, so the file is parsed instead
+                AIR.Value<?> value = type == null ? null : type.parse(key, text, comments);
+                if (value == null) {
+                    throw new IOException("Binary cache contains " + key + " of type " + name + " which cannot be read");
+                }
+                return value;
+            }
+            default:
+                throw new IOException("Binary cache contains unknown value tag " + tag);
+        }
+    }
+
+    private List<String> comments() throws IOException {
+        int count = this.count(4);
+        List<String> comments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            comments.add(this.string());
+        }
+        return comments;
+    }
+
+    private String string() throws IOException {
+        ByteBuffer buffer = this.buffer;
+        int length = this.count(1);
+        String string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return string;
+    }
+
+    /**
+     * Writes the sections to the cache, replacing it atomically.
+     */
+    static void write(Path path, Collection<AIR.Section> sections, long size, long modified, int hash) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(size);
+        out.writeLong(modified);
+        out.writeInt(hash);
+        out.writeBoolean(racy(modified));
+        out.writeInt(sections.size());
+        for (AIR.Section section : sections) {
+            writeString(out, section.key);
+            writeComments(out, section.comments);
+            Map<String, AIR.Value<?>> values = section.values();
+            out.writeInt(values.size());
+            for (AIR.Value<?> value : values.values()) {
+                writeString(out, value.key);
+                writeComments(out, value.comments);
+                writeValue(out, value);
+            }
+        }
+        out.flush();
+        AIR.writeAtomically(path, ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    private static void writeValue(DataOutputStream out, AIR.Value<?> value) throws IOException {
+        if (value instanceof AIR.BooleanValue) {
+            out.writeByte(BOOL);
+            out.writeBoolean(((AIR.BooleanValue) value).booleanValue);
+        } else if (value instanceof AIR.IntValue) {
+            out.writeByte(INT);
+            out.writeInt(((AIR.IntValue) value).intValue);
+        } else if (value instanceof AIR.LongValue) {
+            out.writeByte(LONG);
+            out.writeLong(((AIR.LongValue) value).longValue);
+        } else if (value instanceof AIR.DoubleValue) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((AIR.DoubleValue) value).doubleValue);
+        } else if (value.type == ValueType.STRING) {
+            out.writeByte(STRING);
+            writeString(out, (String) value.get());
+        } else if (value instanceof AIR.TextValue) {
+            // the same string the value was read from
+            out.writeByte(STRING);
+            writeString(out, ((AIR.TextValue<?>) value).text);
+        } else if (value.type == ValueType.LIST) {
+            List<AIR.Value<?>> elements = ((AIR.ListValue) value).get();
+            out.writeByte(LIST);
+            out.writeInt(elements.size());
+            for (AIR.Value<?> element : elements) {
+                writeValue(out, element);
+            }
+        } else {
+            out.writeByte(CUSTOM);
+            writeString(out, value.type.toString());
+            writeString(out, value.serialize());
+        }
+    }
+
+    private static void writeComments(DataOutputStream out, List<String> comments) throws IOException {
+        out.writeInt(comments.size());
+        for (String comment : comments) {
+            writeString(out, comment);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
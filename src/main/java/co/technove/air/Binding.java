@@ -0,0 +1,401 @@
+package co.technove.air;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Plan for copying the values of a section into the fields of a class and back, built once per class.
+ * Fields are accessed through method handles, primitive fields are copied without boxing.
+ */
+final class Binding {
+    private static final ClassValue<Binding> PLANS = new ClassValue<Binding>() {
+        @Override
+        protected Binding computeValue(Class<?> type) {
+            return new Binding(type);
+        }
+    };
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // records can only be found through reflection, as they do not exist on every release we run on
+    private static final Method IS_RECORD;
+    private static final Method GET_RECORD_COMPONENTS;
+    private static final Method COMPONENT_NAME;
+    private static final Method COMPONENT_TYPE;
+    private static final Method COMPONENT_ACCESSOR;
+
+    static {
+        Method isRecord = null;
+        Method getRecordComponents = null;
+        Method componentName = null;
+        Method componentType = null;
+        Method componentAccessor = null;
+        try {
+            isRecord = Class.class.getMethod("isRecord");
+            getRecordComponents = Class.class.getMethod("getRecordComponents");
+            Class<?> component = getRecordComponents.getReturnType().getComponentType();
+            componentName = component.getMethod("getName");
+            componentType = component.getMethod("getType");
+            componentAccessor = component.getMethod("getAccessor");
+        } catch (NoSuchMethodException e) {
+            isRecord = null;
+        }
+        IS_RECORD = isRecord;
+        GET_RECORD_COMPONENTS = getRecordComponents;
+        COMPONENT_NAME = componentName;
+        COMPONENT_TYPE = componentType;
+        COMPONENT_ACCESSOR = componentAccessor;
+    }
+
+    final Class<?> type;
+    final boolean record;
+    final Property[] properties;
+
+    // () -> Object for classes, (Object[]) -> Object taking every component in order for records, null if there is no usable constructor
+    private final MethodHandle constructor;
+
+    private Binding(Class<?> type) {
+        this.type = type;
+        this.record = isRecord(type);
+        try {
+            if (this.record) {
+                Object[] components = (Object[]) GET_RECORD_COMPONENTS.invoke(type);
+                this.properties = new Property[components.length];
+                Class<?>[] parameters = new Class<?>[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    String name = (String) COMPONENT_NAME.invoke(components[i]);
+                    Field field = type.getDeclaredField(name);
+                    Method accessor = (Method) COMPONENT_ACCESSOR.invoke(components[i]);
+                    accessor.setAccessible(true);
+                    parameters[i] = (Class<?>) COMPONENT_TYPE.invoke(components[i]);
+                    this.properties[i] = new Property(type, field, LOOKUP.unreflect(accessor), null);
+                }
+                Constructor<?> constructor = type.getDeclaredConstructor(parameters);
+                constructor.setAccessible(true);
+                this.constructor = LOOKUP.unreflectConstructor(constructor)
+                        .asSpreader(Object[].class, parameters.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } else {
+                List<Property> properties = new ArrayList<>();
+                this.collect(type, properties);
+                this.properties = properties.toArray(new Property[0]);
+                this.constructor = this.findConstructor(type);
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Unable to bind " + type.getName(), e);
+        }
+    }
+
+    static Binding of(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    private static boolean isRecord(Class<?> type) {
+        if (IS_RECORD == null) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_RECORD.invoke(type);
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    // fields of super classes come first, so that the section follows the order the fields were declared in
+    private void collect(Class<?> type, List<Property> properties) throws IllegalAccessException {
+        if (type.getSuperclass() != null && type.getSuperclass() != Object.class) {
+            this.collect(type.getSuperclass(), properties);
+        }
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                continue;
+            }
+            if (Modifier.isFinal(modifiers)) {
+                throw new IllegalArgumentException("Unable to bind final field " + field.getName() + " of " + this.type.getName());
+            }
+            field.setAccessible(true);
+            properties.add(new Property(this.type, field, LOOKUP.unreflectGetter(field), LOOKUP.unreflectSetter(field)));
+        }
+    }
+
+    private MethodHandle findConstructor(Class<?> type) throws IllegalAccessException {
+        if (Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        Constructor<?> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        constructor.setAccessible(true);
+        return LOOKUP.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+    }
+
+    Object create() {
+        if (this.constructor == null) {
+            throw new IllegalArgumentException("Unable to create " + this.type.getName() + " because it has no constructor without parameters");
+        }
+        try {
+            return (Object) this.constructor.invokeExact();
+        } catch (Throwable throwable) {
+            throw failure(throwable);
+        }
+    }
+
+    Object create(Object[] arguments) {
+        try {
+            return (Object) this.constructor.invokeExact(arguments);
+        } catch (Throwable throwable) {
+            throw failure(throwable);
+        }
+    }
+
+    private static RuntimeException failure(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        } else if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        return new IllegalStateException(throwable);
+    }
+
+    enum Kind {
+        INT,
+        LONG,
+        DOUBLE,
+        BOOLEAN,
+        OBJECT,
+        LIST,
+    }
+
+    static final class Property {
+        private static final String[] NO_COMMENT = new String[0];
+
+        final String key;
+        final String[] comment;
+        final Kind kind;
+        final ValueType<?> type;
+        // type of the elements if this is a list
+        final ValueType<?> elementType;
+
+        // getters take the object and return the field type for primitives or Object otherwise, setters take the object and that type
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        private Property(Class<?> owner, Field field, MethodHandle getter, MethodHandle setter) {
+            this.key = field.getName();
+            Comment comment = field.getAnnotation(Comment.class);
+            this.comment = comment == null ? NO_COMMENT : comment.value();
+
+            Class<?> type = field.getType();
+            Class<?> erased;
+            if (type == int.class) {
+                this.kind = Kind.INT;
+                this.type = ValueType.INT;
+                erased = int.class;
+            } else if (type == long.class) {
+                this.kind = Kind.LONG;
+                this.type = ValueType.LONG;
+                erased = long.class;
+            } else if (type == double.class) {
+                this.kind = Kind.DOUBLE;
+                this.type = ValueType.DOUBLE;
+                erased = double.class;
+            } else if (type == boolean.class) {
+                this.kind = Kind.BOOLEAN;
+                this.type = ValueType.BOOL;
+                erased = boolean.class;
+            } else if (type == List.class) {
+                this.kind = Kind.LIST;
+                this.type = ValueType.LIST;
+                erased = Object.class;
+            } else {
+                this.kind = Kind.OBJECT;
+                this.type = typeOf(type);
+                erased = Object.class;
+            }
+
+            if (this.kind == Kind.LIST) {
+                Type generic = field.getGenericType();
+                Type element = generic instanceof ParameterizedType ? ((ParameterizedType) generic).getActualTypeArguments()[0] : null;
+                this.elementType = element instanceof Class ? typeOf((Class<?>) element) : null;
+            } else {
+                this.elementType = null;
+            }
+            if (this.type == null || (this.kind == Kind.LIST && this.elementType == null)) {
+                throw new IllegalArgumentException("Unable to bind field " + field.getName() + " of " + owner.getName() + " with unsupported type " + field.getGenericType().getTypeName());
+            }
+
+            this.getter = getter.asType(MethodType.methodType(erased, Object.class));
+            this.setter = setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, erased));
+        }
+
+        private static ValueType<?> typeOf(Class<?> type) {
+            if (type == String.class) {
+                return ValueType.STRING;
+            } else if (type == Integer.class) {
+                return ValueType.INT;
+            } else if (type == Long.class) {
+                return ValueType.LONG;
+            } else if (type == Double.class) {
+                return ValueType.DOUBLE;
+            } else if (type == Boolean.class) {
+                return ValueType.BOOL;
+            }
+            return null;
+        }
+
+        // copies the value into the field of the object
+        void set(Object target, AIR.Value<?> value) {
+            try {
+                switch (this.kind) {
+                    case INT:
+                        this.setter.invokeExact(target, ((AIR.IntValue) value).intValue);
+                        break;
+                    case LONG:
+                        this.setter.invokeExact(target, value instanceof AIR.LongValue ? ((AIR.LongValue) value).longValue : (long) (Long) value.get());
+                        break;
+                    case DOUBLE:
+                        this.setter.invokeExact(target, ((AIR.DoubleValue) value).doubleValue);
+                        break;
+                    case BOOLEAN:
+                        this.setter.invokeExact(target, ((AIR.BooleanValue) value).booleanValue);
+                        break;
+                    default:
+                        this.setter.invokeExact(target, this.read(value));
+                        break;
+                }
+            } catch (Throwable throwable) {
+                throw failure(throwable);
+            }
+        }
+
+        // the value as it would be stored in the field, lists are copied
+        Object read(AIR.Value<?> value) {
+            if (this.kind != Kind.LIST) {
+                return value.get();
+            }
+            List<AIR.Value<?>> values = ((AIR.ListValue) value).get();
+            List<Object> list = new ArrayList<>(values.size());
+            for (AIR.Value<?> element : values) {
+                list.add(element.get());
+            }
+            return list;
+        }
+
+        // the value a record component receives when it is missing from the section
+        Object zero() {
+            switch (this.kind) {
+                case INT:
+                    return 0;
+                case LONG:
+                    return 0L;
+                case DOUBLE:
+                    return 0.0;
+                case BOOLEAN:
+                    return false;
+                default:
+                    return null;
+            }
+        }
+
+        boolean isNull(Object target) {
+            if (this.kind != Kind.OBJECT && this.kind != Kind.LIST) {
+                return false;
+            }
+            try {
+                return (Object) this.getter.invokeExact(target) == null;
+            } catch (Throwable throwable) {
+                throw failure(throwable);
+            }
+        }
+
+        // copies the field of the object into the value, returning whether the value changed
+        @SuppressWarnings("unchecked")
+        boolean store(Object source, AIR.Value<?> value) {
+            try {
+                switch (this.kind) {
+                    case INT: {
+                        int field = (int) this.getter.invokeExact(source);
+                        AIR.IntValue node = (AIR.IntValue) value;
+                        if (node.intValue == field) {
+                            return false;
+                        }
+                        node.intValue = field;
+                        return true;
+                    }
+                    case LONG: {
+                        long field = (long) this.getter.invokeExact(source);
+                        if (!(value instanceof AIR.LongValue)) {
+                            // an int that is only replaced by a long if the field no longer fits in it
+                            if ((Long) value.get() == field) {
+                                return false;
+                            }
+                            ((AIR.Value<Long>) value).set(field);
+                            return true;
+                        }
+                        AIR.LongValue node = (AIR.LongValue) value;
+                        if (node.longValue == field) {
+                            return false;
+                        }
+                        node.longValue = field;
+                        return true;
+                    }
+                    case DOUBLE: {
+                        double field = (double) this.getter.invokeExact(source);
+                        AIR.DoubleValue node = (AIR.DoubleValue) value;
+                        if (Double.compare(node.doubleValue, field) == 0) {
+                            return false;
+                        }
+                        node.doubleValue = field;
+                        return true;
+                    }
+                    case BOOLEAN: {
+                        boolean field = (boolean) this.getter.invokeExact(source);
+                        AIR.BooleanValue node = (AIR.BooleanValue) value;
+                        if (node.booleanValue == field) {
+                            return false;
+                        }
+                        node.booleanValue = field;
+                        return true;
+                    }
+                    case LIST: {
+                        List<?> field = (List<?>) (Object) this.getter.invokeExact(source);
+                        List<AIR.Value<?>> values = ((AIR.ListValue) value).get();
+                        if (values != null && field.equals(this.read(value))) {
+                            return false;
+                        }
+                        List<AIR.Value<?>> list = new ArrayList<>(field.size());
+                        for (Object element : field) {
+                            list.add(((ValueType<Object>) this.elementType).of(element));
+                        }
+                        ((AIR.ListValue) value).set(list);
+                        return true;
+                    }
+                    default: {
+                        Object field = (Object) this.getter.invokeExact(source);
+                        if (Objects.equals(field, value.get())) {
+                            return false;
+                        }
+                        ((AIR.Value<Object>) value).set(field);
+                        return true;
+                    }
+                }
+            } catch (Throwable throwable) {
+                throw failure(throwable);
+            }
+        }
+    }
+}
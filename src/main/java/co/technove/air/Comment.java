@@ -0,0 +1,15 @@
+package co.technove.air;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Comment written above the value of a field when it is added through {@link AIR#bind(String, Object)} or {@link AIR#store(String, Object)}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Comment {
+    String[] value();
+}
@@ -0,0 +1,86 @@
+package co.technove.air;
+
+/**
+ * Handle to a single value inside an {@link AIR}, created through {@link AIR#key(String, ValueType, Object, String...)}.
+ * The underlying value is resolved once and only looked up again after the configuration has been reloaded.
+ */
+public final class ConfigKey<T> {
+    private final AIR air;
+    private final ValueType<T> type;
+    private final String section;
+    private final String key;
+    private final T defaultValue;
+    private final String[] comment;
+
+    private AIR.Value<T> value;
+    private int generation;
+
+    ConfigKey(AIR air, ValueType<T> type, String section, String key, T defaultValue, String[] comment) {
+        this.air = air;
+        this.type = type;
+        this.section = section;
+        this.key = key;
+        this.defaultValue = defaultValue;
+        this.comment = comment;
+        this.resolve();
+    }
+
+    private void resolve() {
+        this.value = this.air.resolve(this.type, this.section, this.key, this.defaultValue, this.comment);
+        this.generation = this.air.generation;
+    }
+
+    AIR.Value<T> value() {
+        if (this.generation != this.air.generation) {
+            this.resolve();
+        }
+        return this.value;
+    }
+
+    public T get() {
+        return this.value().get();
+    }
+
+    public int getInt() {
+        this.requireType(ValueType.INT);
+        return ((AIR.IntValue) this.value()).intValue;
+    }
+
+    public long getLong() {
+        this.requireType(ValueType.LONG);
+        AIR.Value<T> value = this.value();
+        return value instanceof AIR.LongValue ? ((AIR.LongValue) value).longValue : (Long) value.get();
+    }
+
+    public double getDouble() {
+        this.requireType(ValueType.DOUBLE);
+        return ((AIR.DoubleValue) this.value()).doubleValue;
+    }
+
+    public boolean getBoolean() {
+        this.requireType(ValueType.BOOL);
+        return ((AIR.BooleanValue) this.value()).booleanValue;
+    }
+
+    public void set(T value) {
+        this.air.checkWritable();
+        AIR.Value<T> node = this.value();
+        node.set(value);
+        this.air.markDirty(node);
+    }
+
+    private void requireType(ValueType<?> type) {
+        if (this.type != type) {
+            throw new IllegalStateException("Key " + this + " is of type " + this.type + ", not " + type);
+        }
+    }
+
+    public ValueType<T> getType() {
+        return this.type;
+    }
+
+    @Override
+    public String toString() {
+        return this.section + "." + this.key;
+    }
+}
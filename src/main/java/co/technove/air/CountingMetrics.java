@@ -0,0 +1,261 @@
+package co.technove.air;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts everything reported to it in {@link LongAdder}s, so that any number of threads can record at once.
+ * Can be shared between configurations, and read through {@link #snapshot()} or JMX.
+ */
+public final class CountingMetrics implements AIRMetrics, CountingMetricsMXBean {
+    private final LongAdder parseCount = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder parseBytes = new LongAdder();
+    private final LongAdder saveCount = new LongAdder();
+    private final LongAdder saveNanos = new LongAdder();
+    private final LongAdder saveBytes = new LongAdder();
+
+    private final ConcurrentMap<String, LongAdder> lookups = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> defaults = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> mismatches = new ConcurrentHashMap<>();
+
+    @Override
+    public void onParse(long nanos, long bytes) {
+        this.parseCount.increment();
+        this.parseNanos.add(nanos);
+        this.parseBytes.add(bytes);
+    }
+
+    @Override
+    public void onSave(long nanos, long bytes) {
+        this.saveCount.increment();
+        this.saveNanos.add(nanos);
+        this.saveBytes.add(bytes);
+    }
+
+    @Override
+    public void onLookup(String key) {
+        increment(this.lookups, key);
+    }
+
+    @Override
+    public void onDefault(String key) {
+        increment(this.defaults, key);
+    }
+
+    @Override
+    public void onMismatch(String key) {
+        increment(this.mismatches, key);
+    }
+
+    private static void increment(ConcurrentMap<String, LongAdder> counters, String key) {
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    private static Map<String, Long> sum(ConcurrentMap<String, LongAdder> counters) {
+        List<Map.Entry<String, LongAdder>> entries = new ArrayList<>(counters.entrySet());
+        List<Map.Entry<String, Long>> sums = new ArrayList<>(entries.size());
+        for (Map.Entry<String, LongAdder> entry : entries) {
+            sums.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().sum()));
+        }
+        // most used first
+        sums.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : sums) {
+            map.put(entry.getKey(), entry.getValue());
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    @Override
+    public long getParseCount() {
+        return this.parseCount.sum();
+    }
+
+    @Override
+    public long getParseNanos() {
+        return this.parseNanos.sum();
+    }
+
+    @Override
+    public long getParseBytes() {
+        return this.parseBytes.sum();
+    }
+
+    @Override
+    public long getSaveCount() {
+        return this.saveCount.sum();
+    }
+
+    @Override
+    public long getSaveNanos() {
+        return this.saveNanos.sum();
+    }
+
+    @Override
+    public long getSaveBytes() {
+        return this.saveBytes.sum();
+    }
+
+    /**
+     * Lookups per key, ordered from the most to the least used.
+     */
+    @Override
+    public Map<String, Long> getLookups() {
+        return sum(this.lookups);
+    }
+
+    /**
+     * Times each key fell back to its default, ordered from the most to the least frequent.
+     */
+    @Override
+    public Map<String, Long> getDefaults() {
+        return sum(this.defaults);
+    }
+
+    /**
+     * Type mismatches per key, ordered from the most to the least frequent.
+     */
+    @Override
+    public Map<String, Long> getMismatches() {
+        return sum(this.mismatches);
+    }
+
+    @Override
+    public void reset() {
+        this.parseCount.reset();
+        this.parseNanos.reset();
+        this.parseBytes.reset();
+        this.saveCount.reset();
+        this.saveNanos.reset();
+        this.saveBytes.reset();
+        this.lookups.clear();
+        this.defaults.clear();
+        this.mismatches.clear();
+    }
+
+    /**
+     * Copies the current counts, which are not updated afterwards.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server under {@code co.technove.air:type=AIRMetrics,name=<name>}.
+     *
+     * @return the name it was registered under, to unregister it again
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("co.technove.air:type=AIRMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    public static final class Snapshot {
+        private final long parseCount;
+        private final long parseNanos;
+        private final long parseBytes;
+        private final long saveCount;
+        private final long saveNanos;
+        private final long saveBytes;
+        private final Map<String, Long> lookups;
+        private final Map<String, Long> defaults;
+        private final Map<String, Long> mismatches;
+
+        private Snapshot(CountingMetrics metrics) {
+            this.parseCount = metrics.getParseCount();
+            this.parseNanos = metrics.getParseNanos();
+            this.parseBytes = metrics.getParseBytes();
+            this.saveCount = metrics.getSaveCount();
+            this.saveNanos = metrics.getSaveNanos();
+            this.saveBytes = metrics.getSaveBytes();
+            this.lookups = metrics.getLookups();
+            this.defaults = metrics.getDefaults();
+            this.mismatches = metrics.getMismatches();
+        }
+
+        public long getParseCount() {
+            return this.parseCount;
+        }
+
+        public long getParseNanos() {
+            return this.parseNanos;
+        }
+
+        public long getParseBytes() {
+            return this.parseBytes;
+        }
+
+        public long getSaveCount() {
+            return this.saveCount;
+        }
+
+        public long getSaveNanos() {
+            return this.saveNanos;
+        }
+
+        public long getSaveBytes() {
+            return this.saveBytes;
+        }
+
+        public long getLookups(String key) {
+            return this.lookups.getOrDefault(key, 0L);
+        }
+
+        public long getDefaults(String key) {
+            return this.defaults.getOrDefault(key, 0L);
+        }
+
+        public long getMismatches(String key) {
+            return this.mismatches.getOrDefault(key, 0L);
+        }
+
+        /**
+         * The most looked up keys, the first candidates for a {@link ConfigKey} or a snapshot.
+         */
+        public List<String> getHotKeys(int limit) {
+            List<String> keys = new ArrayList<>(Math.min(limit, this.lookups.size()));
+            for (String key : this.lookups.keySet()) {
+                if (keys.size() == limit) {
+                    break;
+                }
+                keys.add(key);
+            }
+            return keys;
+        }
+
+        /**
+         * Keys that fell back to their default, most frequent first.
+         */
+        public List<String> getMissingKeys() {
+            return new ArrayList<>(this.defaults.keySet());
+        }
+
+        public Map<String, Long> getLookups() {
+            return this.lookups;
+        }
+
+        public Map<String, Long> getDefaults() {
+            return this.defaults;
+        }
+
+        public Map<String, Long> getMismatches() {
+            return this.mismatches;
+        }
+    }
+}
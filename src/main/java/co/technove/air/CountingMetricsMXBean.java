@@ -0,0 +1,28 @@
+package co.technove.air;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link CountingMetrics}, see {@link CountingMetrics#register(String)}.
+ */
+public interface CountingMetricsMXBean {
+    long getParseCount();
+
+    long getParseNanos();
+
+    long getParseBytes();
+
+    long getSaveCount();
+
+    long getSaveNanos();
+
+    long getSaveBytes();
+
+    Map<String, Long> getLookups();
+
+    Map<String, Long> getDefaults();
+
+    Map<String, Long> getMismatches();
+
+    void reset();
+}
@@ -0,0 +1,135 @@
+package co.technove.air;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A file listed in the {@code include} value of the {@code _head} section, whose sections were added to the including configuration.
+ */
+final class Fragment {
+    static final String HEAD = "_head";
+    static final String INCLUDE = "include";
+
+    // parsed fragments by path, so that loading a fragment again only parses it if its size, modification time or contents changed.
+    // entries are held weakly, and dropped once no configuration including the fragment is left
+    private static final ConcurrentMap<Path, Entry> cache = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<Cached> collected = new ReferenceQueue<>();
+
+    final Path path;
+    // the _head section of the fragment, kept out of the including configuration and written back with the fragment
+    final AIR.Section head;
+    // keeps the parsed copy cached for as long as the including configuration is alive
+    private final Cached cached;
+
+    Fragment(Path path, AIR.Section head, Cached cached) {
+        this.path = path;
+        this.head = head;
+        this.cached = cached;
+    }
+
+    // the fragments listed in the _head section, relative to the directory of the including file
+    static List<Path> paths(Path path, AIR.Value<?> include) {
+        Path directory = path.toAbsolutePath().getParent();
+        List<Path> paths = new ArrayList<>();
+        if (include.type == ValueType.STRING) {
+            paths.add(directory.resolve((String) include.get()).normalize());
+        } else if (include.type == ValueType.LIST) {
+            for (AIR.Value<?> element : ((AIR.ListValue) include).get()) {
+                if (element.type != ValueType.STRING) {
+                    throw new IllegalArgumentException("Invalid configuration, " + HEAD + "." + INCLUDE + " in " + path + " must only contain strings");
+                }
+                paths.add(directory.resolve((String) element.get()).normalize());
+            }
+        } else {
+            throw new IllegalArgumentException("Invalid configuration, " + HEAD + "." + INCLUDE + " in " + path + " must be a string or a list of strings");
+        }
+        return paths;
+    }
+
+    /**
+     * Loads a fragment without processing includes, from the cache when the file did not change since it was last parsed.
+     * The result is shared, only use copies of it.
+     */
+    static Cached load(Path path, AIRMetrics metrics, LoadOption... options) throws IOException {
+        Reference<? extends Cached> reference;
+        while ((reference = collected.poll()) != null) {
+            cache.remove(((Entry) reference).path, reference);
+        }
+
+        // read before the contents, so that a change while loading leaves the cached copy looking outdated
+        long modified = Files.getLastModifiedTime(path).toMillis();
+        long size = Files.size(path);
+        Set<LoadOption> optionSet = options.length == 0 ? EnumSet.noneOf(LoadOption.class) : EnumSet.copyOf(Arrays.asList(options));
+
+        Entry entry = cache.get(path);
+        Cached cached = entry == null ? null : entry.get();
+        byte[] bytes = null;
+        if (cached != null && cached.size == size && cached.options.equals(optionSet)) {
+            if (cached.modified == modified && !cached.racy) {
+                return cached;
+            }
+            // touched without changing, or changed within the resolution of the modification time
+            bytes = Files.readAllBytes(path);
+            if (BinaryCache.hash(bytes) == cached.hash) {
+                cached = new Cached(modified, size, cached.hash, optionSet, cached.air);
+                cache.put(path, new Entry(path, cached));
+                return cached;
+            }
+        }
+        // parsed and hashed from the same read, so that the hash always describes what was parsed
+        if (bytes == null) {
+            bytes = Files.readAllBytes(path);
+        }
+        AIR air = AIR.loadFile(path, bytes, modified, metrics, options);
+        cached = new Cached(modified, bytes.length, BinaryCache.hash(bytes), optionSet, air);
+        cache.put(path, new Entry(path, cached));
+        return cached;
+    }
+
+    private static final class Entry extends WeakReference<Cached> {
+        private final Path path;
+
+        private Entry(Path path, Cached cached) {
+            super(cached, collected);
+            this.path = path;
+        }
+    }
+
+    static final class Cached {
+        // file systems only keep modification times to a second or two, so a file changed this recently can change again unnoticed
+        static final long RESOLUTION = 2000;
+
+        private final long modified;
+        private final long size;
+        private final int hash;
+        private final boolean racy;
+        private final Set<LoadOption> options;
+        // never handed out, only copied
+        private final AIR air;
+
+        private Cached(long modified, long size, int hash, Set<LoadOption> options, AIR air) {
+            this.modified = modified;
+            this.size = size;
+            this.hash = hash;
+            this.racy = System.currentTimeMillis() - modified < RESOLUTION;
+            this.options = options;
+            this.air = air;
+        }
+
+        // a separate copy that can be changed freely
+        AIR copy(AIRMetrics metrics) {
+            return this.air.copy(metrics);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package co.technove.air;
+
+import java.util.Arrays;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Read only views of primitive arrays, returned by {@link AIR#getIntArray(String, int[], String...)} and friends.
+ * The backing array is never handed out, so the same instance can be returned on every call.
+ */
+public final class ImmutableArray {
+    private ImmutableArray() {
+    }
+
+    public static final class OfInt {
+        static final OfInt EMPTY = new OfInt(new int[0]);
+
+        private final int[] array;
+
+        OfInt(int[] array) {
+            this.array = array;
+        }
+
+        public int size() {
+            return this.array.length;
+        }
+
+        public boolean isEmpty() {
+            return this.array.length == 0;
+        }
+
+        public int get(int index) {
+            return this.array[index];
+        }
+
+        public boolean contains(int value) {
+            for (int element : this.array) {
+                if (element == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public IntStream stream() {
+            return Arrays.stream(this.array);
+        }
+
+        public int[] toArray() {
+            return this.array.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof OfInt && Arrays.equals(this.array, ((OfInt) o).array);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.array);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(this.array);
+        }
+    }
+
+    public static final class OfLong {
+        static final OfLong EMPTY = new OfLong(new long[0]);
+
+        private final long[] array;
+
+        OfLong(long[] array) {
+            this.array = array;
+        }
+
+        public int size() {
+            return this.array.length;
+        }
+
+        public boolean isEmpty() {
+            return this.array.length == 0;
+        }
+
+        public long get(int index) {
+            return this.array[index];
+        }
+
+        public boolean contains(long value) {
+            for (long element : this.array) {
+                if (element == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public LongStream stream() {
+            return Arrays.stream(this.array);
+        }
+
+        public long[] toArray() {
+            return this.array.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof OfLong && Arrays.equals(this.array, ((OfLong) o).array);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.array);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(this.array);
+        }
+    }
+
+    public static final class OfDouble {
+        static final OfDouble EMPTY = new OfDouble(new double[0]);
+
+        private final double[] array;
+
+        OfDouble(double[] array) {
+            this.array = array;
+        }
+
+        public int size() {
+            return this.array.length;
+        }
+
+        public boolean isEmpty() {
+            return this.array.length == 0;
+        }
+
+        public double get(int index) {
+            return this.array[index];
+        }
+
+        public boolean contains(double value) {
+            for (double element : this.array) {
+                if (Double.compare(element, value) == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public DoubleStream stream() {
+            return Arrays.stream(this.array);
+        }
+
+        public double[] toArray() {
+            return this.array.clone();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof OfDouble && Arrays.equals(this.array, ((OfDouble) o).array);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.array);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(this.array);
+        }
+    }
+}
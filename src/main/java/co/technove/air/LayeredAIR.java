@@ -0,0 +1,244 @@
+package co.technove.air;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stacks several configurations, such as shared defaults followed by cluster and node overrides.
+ * Layers later in the list take precedence over earlier ones, and the last layer is the top layer that receives writes.
+ * <p>
+ * The values every key resolves to are kept in a single index, so lookups cost one probe however many layers there are.
+ * After adding or removing keys of a layer directly, call {@link #update(int)} so that its keys are resolved again.
+ */
+public final class LayeredAIR {
+    private final List<AIR> layers;
+    // the keys each layer had the last time it was indexed
+    private final List<Set<String>> layerKeys;
+    private final Map<String, Entry> index = new HashMap<>();
+
+    // the value a key resolves to, found again in its layer once that layer replaced any of its nodes
+    private static final class Entry {
+        final AIR layer;
+        AIR.Value<?> value;
+        int generation;
+
+        Entry(AIR layer, AIR.Value<?> value) {
+            this.layer = layer;
+            this.value = value;
+            this.generation = layer.generation;
+        }
+    }
+
+    public LayeredAIR(AIR... layers) {
+        this(Arrays.asList(layers));
+    }
+
+    public LayeredAIR(List<AIR> layers) {
+        if (layers.isEmpty()) {
+            throw new IllegalArgumentException("At least one layer is required");
+        }
+        this.layers = Collections.unmodifiableList(new ArrayList<>(layers));
+        this.layerKeys = new ArrayList<>(layers.size());
+        for (AIR layer : this.layers) {
+            Set<String> keys = new HashSet<>();
+            for (AIR.Value<?> value : layer.values()) {
+                String key = value.parent.key + "." + value.key;
+                keys.add(key);
+                this.index.put(key, new Entry(layer, value));
+            }
+            this.layerKeys.add(keys);
+        }
+    }
+
+    public List<AIR> getLayers() {
+        return this.layers;
+    }
+
+    public AIR getTop() {
+        return this.layers.get(this.layers.size() - 1);
+    }
+
+    /**
+     * Resolves the keys the layer had before and has now again, leaving every other key as it is.
+     */
+    public void update(int layer) {
+        Set<String> previous = this.layerKeys.get(layer);
+        Set<String> current = new HashSet<>();
+        for (AIR.Value<?> value : this.layers.get(layer).values()) {
+            current.add(value.parent.key + "." + value.key);
+        }
+        this.layerKeys.set(layer, current);
+
+        for (String key : previous) {
+            if (!current.contains(key)) {
+                this.resolve(key);
+            }
+        }
+        for (String key : current) {
+            this.resolve(key);
+        }
+    }
+
+    /**
+     * Reloads a single layer from the stream and resolves its keys again.
+     */
+    public void reload(int layer, InputStream stream) throws IOException {
+        this.layers.get(layer).reload(stream);
+        this.update(layer);
+    }
+
+    private void resolve(String key) {
+        int dot = key.indexOf('.');
+        String section = key.substring(0, dot);
+        String valueKey = key.substring(dot + 1);
+        for (int i = this.layers.size() - 1; i >= 0; i--) {
+            AIR layer = this.layers.get(i);
+            AIR.Value<?> value = layer.find(section, valueKey);
+            if (value != null) {
+                this.index.put(key, new Entry(layer, value));
+                return;
+            }
+        }
+        this.index.remove(key);
+    }
+
+    // the value the key resolves to, or null if no layer has it
+    private AIR.Value<?> value(String key) {
+        Entry entry = this.index.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.generation != entry.layer.generation) {
+            // replaced by the layer, such as when it converted the value because it was read from it as another type
+            AIR.Value<?> value = entry.layer.find(entry.value.parent.key, entry.value.key);
+            if (value == null) {
+                this.resolve(key);
+                return this.value(key);
+            }
+            entry.value = value;
+            entry.generation = entry.layer.generation;
+        }
+        return entry.value;
+    }
+
+    /**
+     * The layer the value of the key comes from, or -1 if no layer has it.
+     */
+    public int layerOf(String key) {
+        this.value(key);
+        Entry entry = this.index.get(key);
+        return entry == null ? -1 : this.layers.lastIndexOf(entry.layer);
+    }
+
+    public boolean contains(String key) {
+        return this.index.containsKey(key);
+    }
+
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(this.index.keySet());
+    }
+
+    private static IllegalArgumentException mismatch(String key, ValueType<?> type, ValueType<?> requested) {
+        return new IllegalArgumentException("Failed to retrieve " + key + " because it exists with type " + type + " when requested type is " + requested);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        AIR.Value<?> value = this.value(key);
+        if (value == null) {
+            return defaultValue;
+        } else if (value instanceof AIR.BooleanValue) {
+            return ((AIR.BooleanValue) value).booleanValue;
+        }
+        throw mismatch(key, value.type, ValueType.BOOL);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        AIR.Value<?> value = this.value(key);
+        if (value == null) {
+            return defaultValue;
+        } else if (value instanceof AIR.IntValue) {
+            return ((AIR.IntValue) value).intValue;
+        }
+        throw mismatch(key, value.type, ValueType.INT);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        AIR.Value<?> value = this.value(key);
+        if (value == null) {
+            return defaultValue;
+        } else if (value instanceof AIR.LongValue) {
+            return ((AIR.LongValue) value).longValue;
+        } else if (value instanceof AIR.IntValue) {
+            return ((AIR.IntValue) value).intValue;
+        }
+        throw mismatch(key, value.type, ValueType.LONG);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        AIR.Value<?> value = this.value(key);
+        if (value == null) {
+            return defaultValue;
+        } else if (value instanceof AIR.DoubleValue) {
+            return ((AIR.DoubleValue) value).doubleValue;
+        }
+        throw mismatch(key, value.type, ValueType.DOUBLE);
+    }
+
+    public String getString(String key, String defaultValue) {
+        return this.get(key, ValueType.STRING, defaultValue);
+    }
+
+    public <T> List<T> getList(String key, ValueType<T> type, List<T> defaultValue) throws IOException {
+        AIR.Value<?> value = this.value(key);
+        if (value == null) {
+            return defaultValue;
+        } else if (value.type != ValueType.LIST) {
+            throw mismatch(key, value.type, ValueType.LIST);
+        }
+        return AIR.values(AIR.elements((AIR.ListValue) value, type));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, ValueType<T> type, T defaultValue) {
+        AIR.Value<?> value = this.value(key);
+        if (value == null) {
+            return defaultValue;
+        } else if (value.type == type) {
+            return (T) value.get();
+        }
+        // converted the same way as by the layer, without replacing its node
+        AIR.Value<T> converted = type.convert(value);
+        if (converted == null) {
+            throw mismatch(key, value.type, type);
+        }
+        return converted.get();
+    }
+
+    /**
+     * Writes the value to the top layer, where it takes precedence over every other layer.
+     */
+    public <T> void set(ValueType<T> type, String key, T value) {
+        this.getTop().set(type, key, value);
+        this.written(key);
+    }
+
+    public <T> void setList(ValueType<T> listType, String key, List<T> value) {
+        this.getTop().setList(listType, key, value);
+        this.written(key);
+    }
+
+    private void written(String key) {
+        int dot = key.indexOf('.');
+        AIR.Value<?> value = this.getTop().find(key.substring(0, dot), key.substring(dot + 1));
+        this.layerKeys.get(this.layers.size() - 1).add(key);
+        this.index.put(key, new Entry(this.getTop(), value));
+    }
+}
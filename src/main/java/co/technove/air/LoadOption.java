@@ -0,0 +1,33 @@
+package co.technove.air;
+
+/**
+ * Options for {@link AIR#load(java.nio.file.Path, LoadOption...)} and {@link AIR#load(java.nio.ByteBuffer, LoadOption...)}.
+ */
+public enum LoadOption {
+    /**
+     * Only index the sections up front and parse the values of a section the first time it is used.
+     * Sections that are never used are saved exactly as they were read.
+     * Errors in the values of a section are only reported once it is used.
+     */
+    LAZY,
+    /**
+     * Find the sections first, then parse them in parallel on the common {@link java.util.concurrent.ForkJoinPool}.
+     * The result is the same as a regular load, which is worth it for configurations of several megabytes.
+     * Has no effect together with {@link #LAZY}.
+     */
+    PARALLEL,
+    /**
+     * Keep a parsed binary copy of the file next to it, named after the file with {@code .bin} appended, and load from it
+     * instead of parsing while the size and modification time or contents of the file still match.
+     * The copy is written again whenever the file is parsed. Every section is read up front, {@link #LAZY} has no effect.
+     * Only applies when loading from a path.
+     */
+    CACHE,
+    /**
+     * Keep as little in memory as possible, for configurations that are only read. Comments are dropped, keys are
+     * interned, repeated strings are shared and lists of a single type are stored as arrays.
+     * The configuration cannot be changed or saved, values that are missing are returned without being added.
+     * Every section is read up front, {@link #LAZY} has no effect.
+     */
+    COMPACT,
+}
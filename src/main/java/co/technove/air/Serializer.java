@@ -0,0 +1,108 @@
+package co.technove.air;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// encodes everything appended to its buffer straight into a channel, reusing the same buffers throughout
+final class Serializer {
+    private static final int FLUSH_AT = 8192;
+
+    private final WritableByteChannel channel;
+    private final Charset charset;
+    private final CharsetEncoder encoder;
+
+    private final StringBuilder buffer = new StringBuilder(FLUSH_AT * 2);
+    private char[] chars = new char[FLUSH_AT * 2];
+    private CharBuffer charBuffer = CharBuffer.wrap(this.chars);
+    private final ByteBuffer bytes = ByteBuffer.allocate(FLUSH_AT * 2);
+    private long written;
+
+    Serializer(WritableByteChannel channel, Charset charset) {
+        this.channel = channel;
+        this.charset = charset;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    StringBuilder buffer() {
+        return this.buffer;
+    }
+
+    void flushIfFull() throws IOException {
+        if (this.buffer.length() >= FLUSH_AT) {
+            this.encode(false);
+        }
+    }
+
+    // writes text that is already encoded as UTF-8, without decoding it when the output is UTF-8 as well
+    void writeUtf8(ByteBuffer utf8) throws IOException {
+        if (!this.charset.equals(StandardCharsets.UTF_8)) {
+            CharBuffer decoded = StandardCharsets.UTF_8.decode(utf8);
+            this.buffer.append(decoded);
+            this.flushIfFull();
+            return;
+        }
+        this.encode(false);
+        this.drain();
+        this.written += utf8.remaining();
+        while (utf8.hasRemaining()) {
+            this.channel.write(utf8);
+        }
+    }
+
+    // bytes written to the channel so far
+    long written() {
+        return this.written;
+    }
+
+    void finish() throws IOException {
+        this.encode(true);
+        this.encoder.flush(this.bytes);
+        this.drain();
+    }
+
+    private void encode(boolean endOfInput) throws IOException {
+        int length = this.buffer.length();
+        if (this.chars.length < length) {
+            this.chars = new char[length];
+            this.charBuffer = CharBuffer.wrap(this.chars);
+        }
+        this.buffer.getChars(0, length, this.chars, 0);
+        this.buffer.setLength(0);
+
+        CharBuffer in = this.charBuffer;
+        in.clear();
+        in.limit(length);
+        while (true) {
+            CoderResult result = this.encoder.encode(in, this.bytes, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isUnderflow()) {
+                break;
+            }
+            this.drain();
+        }
+        // a high surrogate at the very end is kept until its pair arrives
+        while (in.hasRemaining()) {
+            this.buffer.append(in.get());
+        }
+    }
+
+    private void drain() throws IOException {
+        this.bytes.flip();
+        this.written += this.bytes.remaining();
+        while (this.bytes.hasRemaining()) {
+            this.channel.write(this.bytes);
+        }
+        this.bytes.clear();
+    }
+}
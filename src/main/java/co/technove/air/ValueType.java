@@ -1,97 +1,271 @@
 package co.technove.air;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
 
 public abstract class ValueType<T> {
 
-    private static final List<ValueType<?>> internalValues = new ArrayList<>();
+    private static final List<ValueType<?>> internalValues = new CopyOnWriteArrayList<>();
     public static final List<ValueType<?>> values = Collections.unmodifiableList(internalValues);
 
-    public static final ValueType<Boolean> BOOL = new ValueType<Boolean>("BOOL") {
+    // the types to try for each leading ascii character, replaced as a whole whenever a type is registered
+    private static volatile ValueType<?>[][] dispatch = new ValueType<?>[128][];
+
+    // the primitive types as their own classes, whose serializers take the primitive
+    static final BoolType BOOL_TYPE = new BoolType();
+    static final IntType INT_TYPE = new IntType();
+    static final LongType LONG_TYPE = new LongType();
+    static final DoubleType DOUBLE_TYPE = new DoubleType();
+
+    public static final ValueType<Boolean> BOOL = register(BOOL_TYPE, 't', 'T', 'f', 'F');
+    public static final ValueType<Integer> INT = register(INT_TYPE);
+    public static final ValueType<Long> LONG = register(LONG_TYPE);
+    public static final ValueType<Double> DOUBLE = register(DOUBLE_TYPE);
+    public static final ValueType<String> STRING = register(new ValueType<String>("STRING") {
         @Override
-        public Optional<Boolean> apply(String str) {
-            if (str.equalsIgnoreCase("true") || str.equalsIgnoreCase("false")) {
-                return Optional.of(Boolean.parseBoolean(str));
+        public Optional<String> apply(String str) {
+            if (str.length() >= 2 && str.startsWith("\"")) {
+                if (!str.endsWith("\"")) {
+                    throw new RuntimeException("Missing ending quote");
+                }
+                return Optional.of(str.substring(1, str.length() - 1));
             }
             return Optional.empty();
         }
 
         @Override
-        public String serialize(Boolean value) {
-            return Boolean.toString(value);
+        public String serialize(String value) {
+            return "\"" + value + "\"";
         }
-    };
-    public static final ValueType<Integer> INT = new ValueType<Integer>("INT") {
+
         @Override
-        public Optional<Integer> apply(String str) {
-            if ((((str.charAt(0) == '\u002d' /* - */ || str.charAt(0) == '\u002b' /* + */) && Character.isDigit(str.charAt(1))) || Character.isDigit(str.charAt(0))) && !str.contains(".")) {
-                return Optional.of(Integer.parseInt(str));
-            }
-            return Optional.empty();
+        public void serializeTo(String value, Appendable out) throws IOException {
+            out.append('"').append(value).append('"');
         }
 
         @Override
-        public String serialize(Integer value) {
-            return value.toString();
+        AIR.Value<String> parse(String key, char[] buf, int start, int end, List<String> comments) {
+            if (end - start < 2) {
+                return null;
+            }
+            if (buf[end - 1] != '"') {
+                throw new RuntimeException("Missing ending quote");
+            }
+            AIR.Value<String> value = this.create(key, comments);
+            value.set(new String(buf, start + 1, end - start - 2));
+            return value;
         }
-    };
-    public static final ValueType<Double> DOUBLE = new ValueType<Double>("DOUBLE") {
+
         @Override
-        public Optional<Double> apply(String str) {
-            if ((((str.charAt(0) == '\u002d' /* - */ || str.charAt(0) == '\u002b' /* + */) && Character.isDigit(str.charAt(1))) || Character.isDigit(str.charAt(0))) && str.contains(".")) {
-                return Optional.of(Double.parseDouble(str));
+        AIR.Value<String> convert(AIR.Value<?> value) {
+            if (!(value instanceof AIR.TextValue)) {
+                return null;
             }
+            AIR.Value<String> converted = this.create(value.key, value.comments);
+            converted.set(((AIR.TextValue<?>) value).text);
+            return converted;
+        }
+    }, '"');
+    public static final ValueType<List<AIR.Value<?>>> LIST = register(new ValueType<List<AIR.Value<?>>>("LIST") {
+        @Override
+        public Optional<List<AIR.Value<?>>> apply(String str) {
             return Optional.empty();
         }
 
         @Override
-        public String serialize(Double value) {
-            return value.toString();
+        public String serialize(List<AIR.Value<?>> values) {
+            StringBuilder builder = new StringBuilder().append("[\n");
+            for (AIR.Value<?> value : values) {
+                builder.append("    ").append(value.serialize()).append(",\n");
+            }
+            builder.append("  ]");
+            return builder.toString();
         }
-    };
-    public static final ValueType<String> STRING = new ValueType<String>("STRING") {
+
         @Override
-        public Optional<String> apply(String str) {
-            if (str.length() >= 2 && str.startsWith("\"")) {
-                if (!str.endsWith("\"")) {
-                    throw new RuntimeException("Missing ending quote");
+        AIR.Value<List<AIR.Value<?>>> create(String key, List<String> comments) {
+            return new AIR.ListValue(key, comments);
+        }
+
+        @Override
+        public void serializeTo(List<AIR.Value<?>> values, Appendable out) throws IOException {
+            out.append("[\n");
+            for (AIR.Value<?> value : values) {
+                out.append("    ");
+                value.serializeTo(out);
+                out.append(",\n");
+            }
+            out.append("  ]");
+        }
+    });
+
+    /**
+     * Written as a number followed by a unit, one of ns, us, ms, s, m, h or d, such as "30s", or in ISO-8601 such as "PT30S".
+     */
+    public static final TextType<Duration> DURATION = register(new TextType<Duration>("DURATION") {
+        @Override
+        protected Duration parseText(String text) {
+            String trimmed = text.trim();
+            if (trimmed.startsWith("P") || trimmed.startsWith("-P") || trimmed.startsWith("p") || trimmed.startsWith("-p")) {
+                try {
+                    return Duration.parse(trimmed);
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException(e.getMessage(), e);
                 }
-                return Optional.of(str.substring(1, str.length() - 1));
             }
-            return Optional.empty();
+            int unit = unitStart(trimmed);
+            long amount = Long.parseLong(trimmed.substring(0, unit));
+            switch (trimmed.substring(unit).trim().toLowerCase(Locale.ROOT)) {
+                case "ns":
+                    return Duration.ofNanos(amount);
+                case "us":
+                    return Duration.ofNanos(Math.multiplyExact(amount, 1000L));
+                case "ms":
+                    return Duration.ofMillis(amount);
+                case "s":
+                    return Duration.ofSeconds(amount);
+                case "m":
+                    return Duration.ofMinutes(amount);
+                case "h":
+                    return Duration.ofHours(amount);
+                case "d":
+                    return Duration.ofDays(amount);
+                default:
+                    throw new IllegalArgumentException("Missing or unknown unit in duration \"" + text + "\"");
+            }
         }
 
         @Override
-        public String serialize(String value) {
-            return "\"" + value + "\"";
+        protected String formatText(Duration value) {
+            if (value.isZero()) {
+                return "0s";
+            } else if (value.getNano() == 0) {
+                long seconds = value.getSeconds();
+                if (seconds % 86400 == 0) {
+                    return seconds / 86400 + "d";
+                } else if (seconds % 3600 == 0) {
+                    return seconds / 3600 + "h";
+                } else if (seconds % 60 == 0) {
+                    return seconds / 60 + "m";
+                }
+                return seconds + "s";
+            }
+            try {
+                if (value.getNano() % 1_000_000 == 0) {
+                    return value.toMillis() + "ms";
+                }
+                return value.toNanos() + "ns";
+            } catch (ArithmeticException e) {
+                return value.toString();
+            }
         }
-    };
-    public static final ValueType<List<AIR.Value<?>>> LIST = new ValueType<List<AIR.Value<?>>>("LIST") {
+    });
+
+    /**
+     * Written as a number of bytes optionally followed by a unit, one of B, KB, MB, GB or TB, such as "64MB".
+     * Units are powers of 1024, and KiB, K and the like are accepted as well.
+     */
+    public static final TextType<Long> BYTE_SIZE = register(new TextType<Long>("BYTE_SIZE") {
+        private final String[] units = {"B", "KB", "MB", "GB", "TB"};
+
         @Override
-        public Optional<List<AIR.Value<?>>> apply(String str) {
-            return Optional.empty();
+        protected Long parseText(String text) {
+            String trimmed = text.trim();
+            int unit = unitStart(trimmed);
+            long amount = Long.parseLong(trimmed.substring(0, unit));
+            String suffix = trimmed.substring(unit).trim().toUpperCase(Locale.ROOT);
+            if (suffix.isEmpty() || suffix.equals("B")) {
+                return amount;
+            }
+            for (int i = 1; i < this.units.length; i++) {
+                char prefix = this.units[i].charAt(0);
+                if (suffix.equals(this.units[i]) || suffix.equals(prefix + "IB") || suffix.equals(String.valueOf(prefix))) {
+                    try {
+                        return Math.multiplyExact(amount, 1L << (10 * i));
+                    } catch (ArithmeticException e) {
+                        throw new IllegalArgumentException("Byte size \"" + text + "\" is too large");
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Unknown unit in byte size \"" + text + "\"");
         }
 
         @Override
-        public String serialize(List<AIR.Value<?>> values) {
-            StringBuilder builder = new StringBuilder().append("[\n");
-            for (AIR.Value<?> value : values) {
-                builder.append("    ").append(value.serialize()).append(",\n");
+        protected String formatText(Long value) {
+            long bytes = value;
+            int unit = 0;
+            while (unit < this.units.length - 1 && bytes != 0 && bytes % 1024 == 0) {
+                bytes /= 1024;
+                unit++;
             }
-            builder.append("  ]");
-            return builder.toString();
+            return bytes + this.units[unit];
         }
-    };
+    });
+
+    public static final TextType<Pattern> PATTERN = register(new TextType<Pattern>("PATTERN") {
+        @Override
+        protected Pattern parseText(String text) {
+            return Pattern.compile(text);
+        }
+
+        @Override
+        protected String formatText(Pattern value) {
+            return value.pattern();
+        }
+    });
 
     private final String name;
 
-    private ValueType(String name) {
+    protected ValueType(String name) {
         this.name = name;
+    }
+
+    /**
+     * Registers a type under its name. Values starting with one of the leading characters are parsed as this type
+     * when no built in type can read them, so registering a type never changes how existing files are read.
+     * Types stored as strings, like those extending {@link TextType}, need no leading characters.
+     *
+     * @return the type
+     */
+    public static synchronized <V extends ValueType<?>> V register(V type, char... leading) {
+        String name = ((ValueType<?>) type).name;
+        for (ValueType<?> registered : internalValues) {
+            if (registered.name.equals(name)) {
+                throw new IllegalArgumentException("Type " + name + " is already registered");
+            }
+        }
+        ValueType<?>[][] table = dispatch.clone();
+        for (char c : leading) {
+            if (c >= table.length) {
+                throw new IllegalArgumentException("Leading character " + c + " of type " + name + " is not ascii");
+            }
+            ValueType<?>[] types = table[c] == null ? new ValueType<?>[1] : Arrays.copyOf(table[c], table[c].length + 1);
+            types[types.length - 1] = type;
+            table[c] = types;
+        }
+        internalValues.add(type);
+        dispatch = table;
+        return type;
+    }
 
-        internalValues.add(this);
+    /**
+     * Returns the registered type with the given name, or null if there is none.
+     */
+    public static ValueType<?> byName(String name) {
+        for (ValueType<?> type : internalValues) {
+            if (type.name.equals(name)) {
+                return type;
+            }
+        }
+        return null;
     }
 
     @Override
@@ -103,4 +277,443 @@ public abstract class ValueType<T> {
 
     public abstract String serialize(T value);
 
+    /**
+     * Writes the serialized value to the output, types override this to avoid building an intermediate string.
+     */
+    public void serializeTo(T value, Appendable out) throws IOException {
+        out.append(this.serialize(value));
+    }
+
+    AIR.Value<T> create(String key, List<String> comments) {
+        return new AIR.Value<>(this, key, comments);
+    }
+
+    AIR.Value<T> of(T value) {
+        AIR.Value<T> created = this.create(null, null);
+        created.set(value);
+        return created;
+    }
+
+    // parses the string into a new value, or returns null if it is not of this type
+    AIR.Value<T> parse(String key, String str, List<String> comments) {
+        Optional<T> possible = this.apply(str);
+        if (!possible.isPresent()) {
+            return null;
+        }
+        AIR.Value<T> value = this.create(key, comments);
+        value.set(possible.get());
+        return value;
+    }
+
+    AIR.Value<T> parse(String key, char[] buf, int start, int end, List<String> comments) {
+        return this.parse(key, new String(buf, start, end - start), comments);
+    }
+
+    // picks the types to try from the first character instead of trying every type in order, returns null if no type matches
+    static AIR.Value<?> read(String key, char[] buf, int start, int end, List<String> comments) {
+        if (start == end) {
+            return null;
+        }
+        char first = buf[start];
+        ValueType<?>[] candidates = first < 128 ? dispatch[first] : null;
+        if (first == '\u002d' /* - */ || first == '\u002b' /* + */ ? end - start > 1 && Character.isDigit(buf[start + 1]) : Character.isDigit(first)) {
+            try {
+                return readNumber(key, buf, start, end, comments);
+            } catch (NumberFormatException e) {
+                AIR.Value<?> parsed = read(candidates, key, buf, start, end, comments);
+                if (parsed == null) {
+                    throw e;
+                }
+                return parsed;
+            }
+        }
+        return read(candidates, key, buf, start, end, comments);
+    }
+
+    private static AIR.Value<?> read(ValueType<?>[] candidates, String key, char[] buf, int start, int end, List<String> comments) {
+        if (candidates != null) {
+            for (ValueType<?> valueType : candidates) {
+                AIR.Value<?> parsed = valueType.parse(key, buf, start, end, comments);
+                if (parsed != null) {
+                    return parsed;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static AIR.Value<?> readNumber(String key, char[] buf, int start, int end, List<String> comments) {
+        for (int i = start; i < end; i++) {
+            if (buf[i] == '.') {
+                return DOUBLE.parse(key, buf, start, end, comments);
+            }
+        }
+        long value = parseLong(buf, start, end);
+        if (value == (int) value) {
+            AIR.IntValue parsed = new AIR.IntValue(key, comments);
+            parsed.intValue = (int) value;
+            return parsed;
+        }
+        AIR.LongValue parsed = new AIR.LongValue(key, comments);
+        parsed.longValue = value;
+        return parsed;
+    }
+
+    // the index where the unit after the leading number starts
+    private static int unitStart(String str) {
+        int i = str.startsWith("-") || str.startsWith("+") ? 1 : 0;
+        while (i < str.length() && Character.isDigit(str.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // same as Long#parseLong, without creating a string first
+    private static long parseLong(char[] buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        char first = buf[i];
+        if (first == '\u002d' /* - */ || first == '\u002b' /* + */) {
+            negative = first == '\u002d';
+            i++;
+        }
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyMin = limit / 10;
+        long result = 0;
+        if (i == end) {
+            throw new NumberFormatException("For input string: \"" + new String(buf, start, end - start) + "\"");
+        }
+        for (; i < end; i++) {
+            int digit = Character.digit(buf[i], 10);
+            if (digit < 0 || result < multiplyMin) {
+                throw new NumberFormatException("For input string: \"" + new String(buf, start, end - start) + "\"");
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException("For input string: \"" + new String(buf, start, end - start) + "\"");
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    // converts a value of another type when it can be read losslessly as this type, otherwise returns null
+    AIR.Value<T> convert(AIR.Value<?> value) {
+        return null;
+    }
+
+    private static boolean isNumber(String str) {
+        char first = str.charAt(0);
+        if (first == '\u002d' /* - */ || first == '\u002b' /* + */) {
+            return str.length() > 1 && Character.isDigit(str.charAt(1));
+        }
+        return Character.isDigit(first);
+    }
+
+    /**
+     * A type stored as a string, such as a duration, that is parsed the first time it is read as this type.
+     * The parsed value is kept on the value so later reads return it directly, and the original text is kept so
+     * that reading it does not change how it is saved.
+     */
+    public abstract static class TextType<T> extends ValueType<T> {
+        protected TextType(String name) {
+            super(name);
+        }
+
+        /**
+         * Parses the text, throwing an {@link IllegalArgumentException} if it is not valid.
+         */
+        protected abstract T parseText(String text);
+
+        protected abstract String formatText(T value);
+
+        @Override
+        public Optional<T> apply(String str) {
+            return STRING.apply(str).map(this::parseText);
+        }
+
+        @Override
+        public String serialize(T value) {
+            return STRING.serialize(this.formatText(value));
+        }
+
+        @Override
+        AIR.Value<T> create(String key, List<String> comments) {
+            return new AIR.TextValue<>(this, key, comments);
+        }
+
+        @Override
+        AIR.Value<T> convert(AIR.Value<?> value) {
+            if (value.type != STRING) {
+                return null;
+            }
+            String text = (String) value.get();
+            T parsed;
+            try {
+                parsed = this.parseText(text);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Failed to read " + value.key + " as " + this + ": " + e.getMessage(), e);
+            }
+            AIR.TextValue<T> converted = new AIR.TextValue<>(this, value.key, value.comments);
+            converted.init(text, parsed);
+            return converted;
+        }
+    }
+
+    static final class BoolType extends ValueType<Boolean> {
+
+        private BoolType() {
+            super("BOOL");
+        }
+
+        private static boolean matches(String str) {
+            return str.equalsIgnoreCase("true") || str.equalsIgnoreCase("false");
+        }
+
+        @Override
+        public Optional<Boolean> apply(String str) {
+            if (matches(str)) {
+                return Optional.of(Boolean.parseBoolean(str));
+            }
+            return Optional.empty();
+        }
+
+        @Override
+        public String serialize(Boolean value) {
+            return this.serializeBoolean(value);
+        }
+
+        public String serializeBoolean(boolean value) {
+            return Boolean.toString(value);
+        }
+
+        @Override
+        public void serializeTo(Boolean value, Appendable out) throws IOException {
+            this.serializeTo((boolean) value, out);
+        }
+
+        public void serializeTo(boolean value, Appendable out) throws IOException {
+            if (out instanceof StringBuilder) {
+                ((StringBuilder) out).append(value);
+            } else {
+                out.append(this.serializeBoolean(value));
+            }
+        }
+
+        @Override
+        AIR.Value<Boolean> create(String key, List<String> comments) {
+            return new AIR.BooleanValue(key, comments);
+        }
+
+        @Override
+        AIR.Value<Boolean> parse(String key, String str, List<String> comments) {
+            if (!matches(str)) {
+                return null;
+            }
+            AIR.BooleanValue value = new AIR.BooleanValue(key, comments);
+            value.booleanValue = Boolean.parseBoolean(str);
+            return value;
+        }
+
+        @Override
+        AIR.Value<Boolean> parse(String key, char[] buf, int start, int end, List<String> comments) {
+            boolean parsed;
+            if (matches(buf, start, end, "true")) {
+                parsed = true;
+            } else if (matches(buf, start, end, "false")) {
+                parsed = false;
+            } else {
+                return null;
+            }
+            AIR.BooleanValue value = new AIR.BooleanValue(key, comments);
+            value.booleanValue = parsed;
+            return value;
+        }
+
+        private static boolean matches(char[] buf, int start, int end, String expected) {
+            if (end - start != expected.length()) {
+                return false;
+            }
+            for (int i = 0; i < expected.length(); i++) {
+                if (Character.toLowerCase(buf[start + i]) != expected.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static final class IntType extends ValueType<Integer> {
+
+        private IntType() {
+            super("INT");
+        }
+
+        @Override
+        public Optional<Integer> apply(String str) {
+            if (isNumber(str) && !str.contains(".")) {
+                long value = Long.parseLong(str);
+                if (value == (int) value) {
+                    return Optional.of((int) value);
+                }
+            }
+            return Optional.empty();
+        }
+
+        @Override
+        public String serialize(Integer value) {
+            return this.serializeInt(value);
+        }
+
+        public String serializeInt(int value) {
+            return Integer.toString(value);
+        }
+
+        @Override
+        public void serializeTo(Integer value, Appendable out) throws IOException {
+            this.serializeTo((int) value, out);
+        }
+
+        public void serializeTo(int value, Appendable out) throws IOException {
+            if (out instanceof StringBuilder) {
+                ((StringBuilder) out).append(value);
+            } else {
+                out.append(this.serializeInt(value));
+            }
+        }
+
+        @Override
+        AIR.Value<Integer> create(String key, List<String> comments) {
+            return new AIR.IntValue(key, comments);
+        }
+
+        @Override
+        AIR.Value<Integer> parse(String key, String str, List<String> comments) {
+            if (!isNumber(str) || str.contains(".")) {
+                return null;
+            }
+            long parsed = Long.parseLong(str);
+            if (parsed != (int) parsed) {
+                return null; // left for LONG
+            }
+            AIR.IntValue value = new AIR.IntValue(key, comments);
+            value.intValue = (int) parsed;
+            return value;
+        }
+    }
+
+    static final class LongType extends ValueType<Long> {
+
+        private LongType() {
+            super("LONG");
+        }
+
+        @Override
+        public Optional<Long> apply(String str) {
+            if (isNumber(str) && !str.contains(".")) {
+                return Optional.of(Long.parseLong(str));
+            }
+            return Optional.empty();
+        }
+
+        @Override
+        public String serialize(Long value) {
+            return this.serializeLong(value);
+        }
+
+        public String serializeLong(long value) {
+            return Long.toString(value);
+        }
+
+        @Override
+        public void serializeTo(Long value, Appendable out) throws IOException {
+            this.serializeTo((long) value, out);
+        }
+
+        public void serializeTo(long value, Appendable out) throws IOException {
+            if (out instanceof StringBuilder) {
+                ((StringBuilder) out).append(value);
+            } else {
+                out.append(this.serializeLong(value));
+            }
+        }
+
+        @Override
+        AIR.Value<Long> create(String key, List<String> comments) {
+            return new AIR.LongValue(key, comments);
+        }
+
+        @Override
+        AIR.Value<Long> parse(String key, String str, List<String> comments) {
+            if (!isNumber(str) || str.contains(".")) {
+                return null;
+            }
+            AIR.LongValue value = new AIR.LongValue(key, comments);
+            value.longValue = Long.parseLong(str);
+            return value;
+        }
+
+        @Override
+        AIR.Value<Long> convert(AIR.Value<?> value) {
+            if (!(value instanceof AIR.IntValue)) {
+                return null;
+            }
+            AIR.LongValue converted = new AIR.LongValue(value.key, value.comments);
+            converted.longValue = ((AIR.IntValue) value).intValue;
+            return converted;
+        }
+    }
+
+    static final class DoubleType extends ValueType<Double> {
+
+        private DoubleType() {
+            super("DOUBLE");
+        }
+
+        @Override
+        public Optional<Double> apply(String str) {
+            if (isNumber(str) && str.contains(".")) {
+                return Optional.of(Double.parseDouble(str));
+            }
+            return Optional.empty();
+        }
+
+        @Override
+        public String serialize(Double value) {
+            return this.serializeDouble(value);
+        }
+
+        public String serializeDouble(double value) {
+            return Double.toString(value);
+        }
+
+        @Override
+        public void serializeTo(Double value, Appendable out) throws IOException {
+            this.serializeTo((double) value, out);
+        }
+
+        public void serializeTo(double value, Appendable out) throws IOException {
+            if (out instanceof StringBuilder) {
+                ((StringBuilder) out).append(value);
+            } else {
+                out.append(this.serializeDouble(value));
+            }
+        }
+
+        @Override
+        AIR.Value<Double> create(String key, List<String> comments) {
+            return new AIR.DoubleValue(key, comments);
+        }
+
+        @Override
+        AIR.Value<Double> parse(String key, String str, List<String> comments) {
+            if (!isNumber(str) || !str.contains(".")) {
+                return null;
+            }
+            AIR.DoubleValue value = new AIR.DoubleValue(key, comments);
+            value.doubleValue = Double.parseDouble(str);
+            return value;
+        }
+    }
+
 }
@@ -0,0 +1,81 @@
+package co.technove.air;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class AIRMetricsTest {
+    private static final byte[] CONTENTS = ("[foo]\n" +
+            "bar = 1\n" +
+            "baz = \"text\"\n" +
+            "list = [\n" +
+            "  1,\n" +
+            "]\n").getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void countingTest() throws IOException {
+        CountingMetrics metrics = new CountingMetrics();
+        AIR parser = AIR.load(ByteBuffer.wrap(CONTENTS), metrics);
+        Assertions.assertSame(metrics, parser.getMetrics());
+
+        parser.getInt("foo.bar", 0);
+        parser.getInt("foo.bar", 0);
+        parser.getInt("foo.missing", 5);
+        parser.getString("foo.other", "default");
+        parser.getList("foo.list", ValueType.INT, Collections.emptyList());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> parser.getInt("foo.baz", 0));
+        Assertions.assertThrows(IOException.class, () -> parser.getList("foo.list", ValueType.STRING, Collections.emptyList()));
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        parser.save(stream);
+
+        CountingMetrics.Snapshot snapshot = metrics.snapshot();
+        Assertions.assertEquals(1, snapshot.getParseCount());
+        Assertions.assertEquals(CONTENTS.length, snapshot.getParseBytes());
+        Assertions.assertEquals(1, snapshot.getSaveCount());
+        Assertions.assertEquals(stream.size(), snapshot.getSaveBytes());
+        Assertions.assertEquals(2, snapshot.getLookups("foo.bar"));
+        Assertions.assertEquals(Arrays.asList("foo.bar", "foo.list"), snapshot.getHotKeys(2));
+        Assertions.assertEquals(1, snapshot.getDefaults("foo.missing"));
+        Assertions.assertEquals(1, snapshot.getDefaults("foo.other"));
+        Assertions.assertEquals(0, snapshot.getDefaults("foo.bar"));
+        Assertions.assertEquals(1, snapshot.getMismatches("foo.baz"));
+        Assertions.assertEquals(1, snapshot.getMismatches("foo.list"));
+
+        parser.reload(new ByteArrayInputStream(CONTENTS));
+        Assertions.assertEquals(2, metrics.getParseCount());
+        Assertions.assertEquals(CONTENTS.length * 2L, metrics.getParseBytes());
+
+        // snapshots do not change afterwards
+        metrics.reset();
+        Assertions.assertEquals(0, metrics.getParseCount());
+        Assertions.assertEquals(2, snapshot.getLookups("foo.bar"));
+
+        parser.setMetrics(AIRMetrics.NOOP);
+        parser.getInt("foo.bar", 0);
+        Assertions.assertTrue(metrics.getLookups().isEmpty());
+    }
+
+    @Test
+    public void jmxTest() throws Exception {
+        CountingMetrics metrics = new CountingMetrics();
+        new AIR(new ByteArrayInputStream(CONTENTS), metrics).getInt("foo.bar", 0);
+
+        ObjectName name = metrics.register("jmxTest");
+        try {
+            Assertions.assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "ParseCount"));
+            Assertions.assertEquals((long) CONTENTS.length, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "ParseBytes"));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package co.technove.air;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class AIRReaderTest {
+    private static final String CONTENTS = "# Hello, World\n" +
+            "[foo]\n" +
+            "bar = \"wow\"\n" +
+            "baz = 5\n" +
+            "list = [\n" +
+            "  1.5,\n" +
+            "  true,\n" +
+            "]\n";
+
+    @Test
+    public void pullTest() throws IOException {
+        try (AIRReader reader = new AIRReader(new StringReader(CONTENTS))) {
+            Assertions.assertEquals(AIRReader.Event.COMMENT, reader.next());
+            Assertions.assertEquals("Hello, World", reader.getComment());
+            Assertions.assertEquals(AIRReader.Event.SECTION, reader.next());
+            Assertions.assertEquals("foo", reader.getSection());
+            Assertions.assertEquals(AIRReader.Event.VALUE, reader.next());
+            Assertions.assertEquals("bar", reader.getKey());
+            Assertions.assertEquals(ValueType.STRING, reader.getType());
+            Assertions.assertEquals("wow", reader.getString());
+            Assertions.assertEquals(AIRReader.Event.VALUE, reader.next());
+            Assertions.assertEquals(5, reader.getInt());
+            Assertions.assertEquals(5L, reader.getLong());
+            Assertions.assertThrows(IllegalStateException.class, reader::getDouble);
+            Assertions.assertEquals(AIRReader.Event.LIST_START, reader.next());
+            Assertions.assertEquals("list", reader.getKey());
+            Assertions.assertEquals(AIRReader.Event.LIST_ITEM, reader.next());
+            Assertions.assertEquals(1.5, reader.getDouble());
+            Assertions.assertEquals(AIRReader.Event.LIST_ITEM, reader.next());
+            Assertions.assertTrue(reader.getBoolean());
+            Assertions.assertEquals(AIRReader.Event.LIST_END, reader.next());
+            Assertions.assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void charsetTest() throws IOException {
+        byte[] contents = "[foo]\nbar = \"h\u00e9llo\"\n".getBytes(StandardCharsets.UTF_8);
+        try (AIRReader reader = new AIRReader(new ByteArrayInputStream(contents))) {
+            reader.next();
+            reader.next();
+            Assertions.assertEquals("h\u00e9llo", reader.getString());
+        }
+        contents = "[foo]\nbar = \"h\u00e9llo\"\n".getBytes(StandardCharsets.ISO_8859_1);
+        try (AIRReader reader = new AIRReader(new ByteArrayInputStream(contents), StandardCharsets.ISO_8859_1)) {
+            reader.next();
+            reader.next();
+            Assertions.assertEquals("h\u00e9llo", reader.getString());
+        }
+    }
+
+    @Test
+    public void handlerTest() throws IOException {
+        List<String> events = new ArrayList<>();
+        try (AIRReader reader = new AIRReader(new StringReader(CONTENTS))) {
+            reader.read(new AIRReader.Handler() {
+                @Override
+                public void onComment(String comment) {
+                    events.add("comment " + comment);
+                }
+
+                @Override
+                public void onSection(String name) {
+                    events.add("section " + name);
+                }
+
+                @Override
+                public void onValue(String key, AIRReader reader) {
+                    events.add("value " + key + " " + reader.getValue());
+                }
+
+                @Override
+                public void onListStart(String key) {
+                    events.add("start " + key);
+                }
+
+                @Override
+                public void onListItem(String key, AIRReader reader) {
+                    events.add("item " + key + " " + reader.getValue());
+                }
+
+                @Override
+                public void onListEnd(String key) {
+                    events.add("end " + key);
+                }
+            });
+        }
+        Assertions.assertEquals(Arrays.asList("comment Hello, World", "section foo", "value bar wow", "value baz 5",
+                "start list", "item list 1.5", "item list true", "end list"), events);
+    }
+}
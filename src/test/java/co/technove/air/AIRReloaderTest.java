@@ -0,0 +1,90 @@
+package co.technove.air;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AIRReloaderTest {
+    @Test
+    public void diffTest() throws IOException {
+        AIR before = AIR.load(ByteBuffer.wrap("[foo]\nbar = 1\nbaz = 2\n[gone]\nvalue = 1".getBytes(StandardCharsets.UTF_8)));
+        AIR after = AIR.load(ByteBuffer.wrap("[foo]\nbar = 1\nbaz = 3\nnew = \"hi\"".getBytes(StandardCharsets.UTF_8)));
+
+        AIRDiff diff = AIRDiff.between(before.freeze(), after.freeze());
+        Assertions.assertEquals("[foo.baz: 2 -> 3, foo.new: null -> hi, gone.value: 1 -> null]", diff.toString());
+        Assertions.assertTrue(AIRDiff.between(after.freeze(), after.freeze()).isEmpty());
+    }
+
+    @Test
+    public void reloadTest() throws IOException, InterruptedException {
+        File file = File.createTempFile("air", ".air");
+        file.deleteOnExit();
+        Path path = file.toPath();
+        Files.write(path, "[foo]\nbar = 1\nbaz = 1\n[other]\nvalue = 1".getBytes(StandardCharsets.UTF_8));
+
+        CountDownLatch failed = new CountDownLatch(1);
+        List<Exception> errors = new CopyOnWriteArrayList<>();
+        try (AIRReloader reloader = new AIRReloader(path, Duration.ofMillis(10), e -> {
+            errors.add(e);
+            failed.countDown();
+        })) {
+            Assertions.assertEquals(1, reloader.snapshot().getInt("foo.bar", 0));
+
+            CountDownLatch latch = new CountDownLatch(1);
+            List<AIRDiff> keyDiffs = new CopyOnWriteArrayList<>();
+            List<AIRDiff> otherDiffs = new CopyOnWriteArrayList<>();
+            reloader.addListener("foo.bar", diff -> {
+                keyDiffs.add(diff);
+                latch.countDown();
+            });
+            reloader.addListener("foo.baz", keyDiffs::add);
+            reloader.addListener("other", otherDiffs::add);
+
+            Files.write(path, "[foo]\nbar = 2\nbaz = 1\n[other]\nvalue = 1".getBytes(StandardCharsets.UTF_8));
+            Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(2, reloader.snapshot().getInt("foo.bar", 0));
+            Assertions.assertEquals(1, keyDiffs.size());
+            Assertions.assertEquals("foo.bar", keyDiffs.get(0).getChanges().get(0).getKey());
+            Assertions.assertTrue(otherDiffs.isEmpty());
+            Assertions.assertTrue(errors.isEmpty());
+
+            // a file that fails to load goes to the error handler and the previous values stay
+            Files.write(path, "[foo".getBytes(StandardCharsets.UTF_8));
+            Assertions.assertTrue(failed.await(10, TimeUnit.SECONDS));
+            Assertions.assertTrue(errors.get(0) instanceof IllegalArgumentException);
+            Assertions.assertEquals(2, reloader.snapshot().getInt("foo.bar", 0));
+        }
+    }
+
+    @Test
+    public void includeReloadTest() throws IOException, InterruptedException {
+        Path directory = Files.createTempDirectory("air");
+        Path main = directory.resolve("main.air");
+        Path fragment = directory.resolve("fragment.air");
+        Files.write(main, "[_head]\ninclude = \"fragment.air\"\n[foo]\nbar = 1".getBytes(StandardCharsets.UTF_8));
+        Files.write(fragment, "[other]\nvalue = 1".getBytes(StandardCharsets.UTF_8));
+
+        List<Exception> errors = new CopyOnWriteArrayList<>();
+        try (AIRReloader reloader = new AIRReloader(main, Duration.ofMillis(10), errors::add)) {
+            Assertions.assertEquals(1, reloader.snapshot().getInt("other.value", 0));
+
+            CountDownLatch latch = new CountDownLatch(1);
+            reloader.addListener("other.value", diff -> latch.countDown());
+            Files.write(fragment, "[other]\nvalue = 2".getBytes(StandardCharsets.UTF_8));
+            Assertions.assertTrue(latch.await(10, TimeUnit.SECONDS));
+            Assertions.assertEquals(2, reloader.snapshot().getInt("other.value", 0));
+            Assertions.assertTrue(errors.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package co.technove.air;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class AIRSaverTest {
+    @Test
+    public void saveTest() throws IOException, InterruptedException {
+        File file = File.createTempFile("air", ".air");
+        file.deleteOnExit();
+        Path path = file.toPath();
+        Files.write(path, "[foo]\n  a = 1\n".getBytes(StandardCharsets.UTF_8));
+        FileTime written = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(path, written);
+
+        AIR air = AIR.load(path);
+        List<Exception> errors = new CopyOnWriteArrayList<>();
+        try (AIRSaver saver = new AIRSaver(air, path, Duration.ofMillis(50), errors::add)) {
+            for (int i = 2; i <= 10; i++) {
+                int value = i;
+                air.edit(tx -> tx.set(ValueType.INT, "foo.a", value));
+            }
+            // the burst is written once, after the edits stop
+            Assertions.assertEquals(written, Files.getLastModifiedTime(path));
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (Files.getLastModifiedTime(path).equals(written) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Assertions.assertEquals(10, AIR.load(path).getInt("foo.a", 0));
+            Assertions.assertFalse(air.isDirty());
+            Assertions.assertFalse(saver.flush());
+
+            air.edit(tx -> tx.set(ValueType.INT, "foo.a", 11));
+        }
+        // closing writes what is still pending
+        Assertions.assertEquals(11, AIR.load(path).getInt("foo.a", 0));
+        Assertions.assertTrue(errors.isEmpty());
+        Assertions.assertThrows(UnsupportedOperationException.class,
+                () -> new AIRSaver(AIR.load(ByteBuffer.wrap(new byte[0]), LoadOption.COMPACT), path, errors::add));
+    }
+}
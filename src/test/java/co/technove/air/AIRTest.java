@@ -7,10 +7,23 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
 
 // todo way more comment & section tests
 public class AIRTest {
@@ -151,4 +164,748 @@ public class AIRTest {
           "  ]\n" +
           "\n");
     }
+
+    @Test
+    public void listCommentTest() throws IOException {
+        String contents = "[lists]\n" +
+                "  # about list\n" +
+                "  l = [\n" +
+                "    1,\n" +
+                "    2,\n" +
+                "  ]\n" +
+                "  # about empty\n" +
+                "  e = [\n" +
+                "  ]\n" +
+                "\n";
+        AIR parser = new AIR(new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        parser.save(outputStream);
+        Assertions.assertEquals(contents, outputStream.toString(StandardCharsets.UTF_8));
+
+        parser = new AIR(new ByteArrayInputStream("[lists]\n# about list\nl = [\n1\n]".getBytes(StandardCharsets.UTF_8)));
+        outputStream = new ByteArrayOutputStream();
+        parser.save(outputStream);
+        Assertions.assertEquals("[lists]\n  # about list\n  l = [\n    1,\n  ]\n\n", outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void baselineListCommentTest() throws IOException {
+        // as saved by 1.0, which attached the comments after a list to both the list and the next value and so
+        // repeated them on every save, comments now belong to the value below them
+        String saved = "[lists]\n" +
+                "  # about next\n" +
+                "  l = [\n" +
+                "    1,\n" +
+                "    2,\n" +
+                "  ]\n" +
+                "  # about next\n" +
+                "  n = 3\n" +
+                "  # about empty\n" +
+                "  # after empty\n" +
+                "  e = [\n" +
+                "  ]\n" +
+                "  # about empty\n" +
+                "  # after empty\n" +
+                "  m = 4\n" +
+                "\n";
+        String contents = saved;
+        for (int i = 0; i < 2; i++) {
+            AIR parser = new AIR(new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)));
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            parser.save(outputStream);
+            contents = outputStream.toString(StandardCharsets.UTF_8);
+            Assertions.assertEquals(saved, contents);
+        }
+    }
+
+    @Test
+    public void keyHandleTest() throws IOException {
+        AIR parser = new AIR(new ByteArrayInputStream("[foo]\nbar = 5".getBytes(StandardCharsets.UTF_8)));
+
+        ConfigKey<Integer> bar = parser.key("foo.bar", ValueType.INT, 1);
+        ConfigKey<String> baz = parser.key("foo.baz", ValueType.STRING, "hello", "a comment");
+        Assertions.assertEquals(5, bar.get());
+        Assertions.assertEquals("hello", baz.get());
+        Assertions.assertEquals("hello", parser.getString("foo.baz", "goodbye"));
+
+        parser.set(ValueType.INT, "foo.bar", 10);
+        Assertions.assertEquals(10, bar.get());
+        bar.set(15);
+        Assertions.assertEquals(15, parser.getInt("foo.bar", 0));
+
+        parser.reload(new ByteArrayInputStream("[foo]\nbar = 20\nbaz = \"world\"".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(20, bar.get());
+        Assertions.assertEquals("world", baz.get());
+
+        parser.reload(new ByteArrayInputStream("[foo]\n".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(1, bar.get());
+        Assertions.assertEquals("hello", baz.get());
+    }
+
+    @Test
+    public void primitiveTest() throws IOException {
+        String contents = "[foo]\n" +
+                "int = 12\n" +
+                "long = 3000000000\n" +
+                "small = 5\n" +
+                "double = 1.5\n" +
+                "bool = TRUE";
+
+        AIR parser = new AIR(new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(12, parser.getInt("foo.int", 0));
+        Assertions.assertEquals(3000000000L, parser.getLong("foo.long", 0));
+        Assertions.assertEquals(1.5, parser.getDouble("foo.double", 0));
+        Assertions.assertTrue(parser.getBoolean("foo.bool", false));
+
+        ConfigKey<Long> small = parser.key("foo.small", ValueType.LONG, 0L);
+        Assertions.assertEquals(5L, small.getLong());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> parser.getInt("foo.double", 0));
+        Assertions.assertThrows(IllegalStateException.class, small::getInt);
+
+        // reading an int as a long leaves it an int, until it is set to a long that does not fit
+        ConfigKey<Integer> smallInt = parser.key("foo.small", ValueType.INT, 0);
+        Assertions.assertEquals(5L, parser.getLong("foo.small", 0));
+        Assertions.assertEquals(5, parser.getInt("foo.small", 0));
+        small.set(6L);
+        Assertions.assertEquals(6, smallInt.getInt());
+        Assertions.assertEquals(6L, small.getLong());
+        parser.set(ValueType.LONG, "foo.small", 3000000001L);
+        Assertions.assertEquals(3000000001L, small.getLong());
+        Assertions.assertThrows(IllegalArgumentException.class, smallInt::getInt);
+        parser.set(ValueType.LONG, "foo.small", 5L);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        parser.save(outputStream);
+        Assertions.assertEquals("[foo]\n" +
+                "  int = 12\n" +
+                "  long = 3000000000\n" +
+                "  small = 5\n" +
+                "  double = 1.5\n" +
+                "  bool = true\n" +
+                "\n", outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void malformedParseTest() {
+        String[][] cases = {
+                {"foo = \"bar\"", "Invalid configuration, found value outside of section foo = \"bar\""},
+                {"[foo", "Invalid configuration, section '[foo' does not end with ]"},
+                {"[]", "Invalid configuration, section '[]' does not have a name"},
+                {"[foo]\r\n  a= 5", "Invalid configuration, assignment invalid a= 5"},
+                {"[foo]\r\n  bar = what", "Invalid configuration, unknown type for bar = what"},
+        };
+        for (String[] test : cases) {
+            IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class, () -> new AIR(new ByteArrayInputStream(test[0].getBytes(StandardCharsets.UTF_8))));
+            Assertions.assertEquals(test[1], e.getMessage());
+        }
+    }
+
+    @Test
+    public void loadTest() throws IOException {
+        String contents = "# Gr\u00fc\u00dfe\n" +
+                "[foo]\n" +
+                "bar = \"w\u00f6w\"\n" +
+                "baz = 5";
+
+        AIR parser = AIR.load(ByteBuffer.wrap(contents.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals("w\u00f6w", parser.getString("foo.bar", "nonexistent"));
+        Assertions.assertEquals(5, parser.getInt("foo.baz", 0));
+
+        StringBuilder large = new StringBuilder("[foo]\n");
+        for (int i = 0; i < 10000; i++) {
+            large.append("  key").append(i).append(" = \"v\u00e4lue").append(i).append("\"\n");
+        }
+        File file = File.createTempFile("air", ".air");
+        file.deleteOnExit();
+        Files.write(file.toPath(), large.toString().getBytes(StandardCharsets.UTF_8));
+
+        AIR mapped = AIR.load(file.toPath());
+        Assertions.assertEquals("v\u00e4lue9999", mapped.getString("foo.key9999", "nonexistent"));
+    }
+
+    @Test
+    public void lazyLoadTest() throws IOException {
+        String contents = "# Hello, World\r\n" +
+                "[_head]\r\n" +
+                "\r\n" +
+                "#\n" +
+                "[foo]\n" +
+                "bar=\"wow\"\n" +
+                "# about baz\n" +
+                "baz = [\n" +
+                "1,\n" +
+                "]\n" +
+                "# comment for the next section\n" +
+                "[broken]\n" +
+                "value = what\n";
+
+        AIR parser = AIR.load(ByteBuffer.wrap(contents.getBytes(StandardCharsets.UTF_8)), LoadOption.LAZY);
+        parser.setComment("_head", "Goodbye, World");
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        parser.save(outputStream);
+        Assertions.assertEquals("# Goodbye, World\n" +
+                "[_head]\n" +
+                "\n" +
+                "# \n" +
+                "[foo]\n" +
+                "bar=\"wow\"\n" +
+                "# about baz\n" +
+                "baz = [\n" +
+                "1,\n" +
+                "]\n" +
+                "\n" +
+                "# comment for the next section\n" +
+                "[broken]\n" +
+                "value = what\n" +
+                "\n", outputStream.toString(StandardCharsets.UTF_8));
+
+        Assertions.assertEquals("wow", parser.getString("foo.bar", "nonexistent"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> parser.getString("broken.value", "nonexistent"));
+
+        outputStream = new ByteArrayOutputStream();
+        parser.save(outputStream);
+        Assertions.assertEquals("# Goodbye, World\n" +
+                "[_head]\n" +
+                "\n" +
+                "# \n" +
+                "[foo]\n" +
+                "  bar = \"wow\"\n" +
+                "  # about baz\n" +
+                "  baz = [\n" +
+                "    1,\n" +
+                "  ]\n" +
+                "\n" +
+                "# comment for the next section\n" +
+                "[broken]\n" +
+                "value = what\n" +
+                "\n", outputStream.toString(StandardCharsets.UTF_8));
+
+        // a section that fails to parse keeps its text and fails again on the next use
+        AIR broken = AIR.load(ByteBuffer.wrap("[broken]\nfirst = 1\nbad = what\nlast = 2\n".getBytes(StandardCharsets.UTF_8)), LoadOption.LAZY);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> broken.getInt("broken.last", -1));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> broken.getInt("broken.last", -1));
+        outputStream = new ByteArrayOutputStream();
+        broken.save(outputStream);
+        Assertions.assertEquals("[broken]\nfirst = 1\nbad = what\nlast = 2\n\n", outputStream.toString(StandardCharsets.UTF_8));
+
+        // a large file changed or truncated after a lazy load does not change the sections that were not used yet
+        File file = File.createTempFile("air", ".air");
+        file.deleteOnExit();
+        StringBuilder large = new StringBuilder("[foo]\n  value = 1\n");
+        for (int i = 0; large.length() < 128 * 1024; i++) {
+            large.append("[section").append(i).append("]\n  value = 1\n");
+        }
+        Files.write(file.toPath(), large.toString().getBytes(StandardCharsets.UTF_8));
+        AIR lazy = AIR.load(file.toPath(), LoadOption.LAZY);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap("2".getBytes(StandardCharsets.UTF_8)), "[foo]\n  value = ".length());
+        }
+        Assertions.assertEquals(1, lazy.getInt("foo.value", 0));
+        Files.write(file.toPath(), new byte[0]);
+        Assertions.assertEquals(1, lazy.getInt("section100.value", 0));
+    }
+
+    @Test
+    public void snapshotTest() throws IOException {
+        String contents = "[foo]\n" +
+                "int = 12\n" +
+                "double = 1.5\n" +
+                "bool = true\n" +
+                "string = \"wow\"\n" +
+                "list = [\n" +
+                "1,\n" +
+                "2,\n" +
+                "]";
+
+        AIR parser = new AIR(new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertFalse(parser.snapshot().contains("foo.int"));
+
+        AIRSnapshot snapshot = parser.freeze();
+        Assertions.assertSame(snapshot, parser.snapshot());
+        Assertions.assertEquals(12, snapshot.getInt("foo.int", 0));
+        Assertions.assertEquals(12L, snapshot.getLong("foo.int", 0));
+        Assertions.assertEquals(1.5, snapshot.getDouble("foo.double", 0));
+        Assertions.assertTrue(snapshot.getBoolean("foo.bool", false));
+        Assertions.assertEquals("wow", snapshot.getString("foo.string", null));
+        Assertions.assertEquals(Arrays.asList(1, 2), snapshot.getList("foo.list", ValueType.INT, null));
+        Assertions.assertEquals("nonexistent", snapshot.getString("foo.missing", "nonexistent"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> snapshot.getInt("foo.string", 0));
+        Assertions.assertThrows(IOException.class, () -> snapshot.getList("foo.list", ValueType.STRING, null));
+
+        parser.set(ValueType.INT, "foo.int", 13);
+        Assertions.assertEquals(12, snapshot.getInt("foo.int", 0));
+        Assertions.assertEquals(13, parser.freeze().getInt("foo.int", 0));
+        Assertions.assertFalse(snapshot.contains("foo.missing"));
+    }
+
+    @Test
+    public void snapshotConversionTest() throws IOException {
+        String contents = "[foo]\n  timeout = \"30s\"\n  size = \"64MB\"\n  pattern = \"a+b\"\n  int = 12\n" +
+                "  ints = [\n    1,\n    2,\n  ]\n  mixed = [\n    1,\n    99999999999,\n  ]\n  waits = [\n    \"1m\",\n  ]\n";
+        AIR air = new AIR(new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)));
+        AIRSnapshot snapshot = air.freeze();
+
+        Assertions.assertEquals(Duration.ofSeconds(30), snapshot.get("foo.timeout", ValueType.DURATION, null));
+        Assertions.assertEquals(64L << 20, (long) snapshot.get("foo.size", ValueType.BYTE_SIZE, 0L));
+        Assertions.assertTrue(snapshot.get("foo.pattern", ValueType.PATTERN, null).matcher("aab").matches());
+        Assertions.assertEquals("30s", snapshot.getString("foo.timeout", null));
+        Assertions.assertEquals(12L, (long) snapshot.get("foo.int", ValueType.LONG, 0L));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> snapshot.get("foo.int", ValueType.DURATION, null));
+        Assertions.assertEquals(Arrays.asList(1L, 2L), snapshot.getList("foo.ints", ValueType.LONG, null));
+        Assertions.assertEquals(Arrays.asList(1, 2), snapshot.getList("foo.ints", ValueType.INT, null));
+        Assertions.assertEquals(Arrays.asList(1L, 99999999999L), snapshot.getList("foo.mixed", ValueType.LONG, null));
+        Assertions.assertEquals(Collections.singletonList(Duration.ofMinutes(1)), snapshot.getList("foo.waits", ValueType.DURATION, null));
+        Assertions.assertThrows(IOException.class, () -> snapshot.getList("foo.mixed", ValueType.INT, null));
+
+        // values the configuration already read as another type are read back the same way
+        Assertions.assertEquals(Duration.ofSeconds(30), air.getDuration("foo.timeout", Duration.ZERO));
+        Assertions.assertEquals("30s", air.freeze().getString("foo.timeout", null));
+        Assertions.assertFalse(air.isDirty());
+    }
+
+    @Test
+    public void pathSaveTest() throws IOException {
+        File file = File.createTempFile("air", ".air");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "[foo]\nbar = 1".getBytes(StandardCharsets.UTF_8));
+
+        AIR parser = AIR.load(file.toPath());
+        Assertions.assertFalse(parser.isDirty());
+        Assertions.assertEquals(1, parser.getInt("foo.bar", 0));
+        Assertions.assertFalse(parser.isDirty());
+        Assertions.assertFalse(parser.save(file.toPath()));
+        Assertions.assertEquals("[foo]\nbar = 1", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+        Assertions.assertEquals(2, parser.getInt("foo.baz", 2, "a comment"));
+        Assertions.assertTrue(parser.isDirty());
+        Assertions.assertTrue(parser.save(file.toPath()));
+        Assertions.assertFalse(parser.isDirty());
+        Assertions.assertEquals("[foo]\n  bar = 1\n  # a comment\n  baz = 2\n\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+
+        AIR other = new AIR();
+        other.getInt("foo.bar", 1);
+        other.getInt("foo.baz", 2, "a comment");
+        Assertions.assertTrue(other.isDirty());
+        Assertions.assertFalse(other.save(file.toPath()));
+        Assertions.assertFalse(other.isDirty());
+
+        // the file keeps its permissions when it is replaced
+        boolean posix = Files.getFileStore(file.toPath()).supportsFileAttributeView(PosixFileAttributeView.class);
+        if (posix) {
+            Files.setPosixFilePermissions(file.toPath(), PosixFilePermissions.fromString("rw-r--r--"));
+        }
+        other.set(ValueType.INT, "foo.bar", 3);
+        Assertions.assertTrue(other.save(file.toPath()));
+        Assertions.assertEquals(3, AIR.load(file.toPath()).getInt("foo.bar", 0));
+        if (posix) {
+            Assertions.assertEquals("rw-r--r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(file.toPath())));
+        }
+    }
+
+    @Test
+    public void channelSaveTest() throws IOException {
+        AIR parser = AIR.load(ByteBuffer.wrap(("# header\n[foo]\n  bar = \"caf\u00e9\"\n  # a number\n  baz = -12\n  big = 12345678901\n  d = 1.5\n  b = true\n" +
+                "  list = [\n    1,\n    2,\n  ]\n").getBytes(StandardCharsets.UTF_8)));
+        parser.set(ValueType.INT, "foo.baz", -12);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        parser.save(Channels.newChannel(stream));
+        String out = new String(stream.toByteArray(), StandardCharsets.UTF_8);
+        Assertions.assertEquals("# header\n[foo]\n  bar = \"caf\u00e9\"\n  # a number\n  baz = -12\n  big = 12345678901\n  d = 1.5\n  b = true\n" +
+                "  list = [\n    1,\n    2,\n  ]\n\n", out);
+    }
+
+    public static class Settings {
+        @Comment("how many workers to start")
+        private int threads = 4;
+        public long timeout = 1000L;
+        public double ratio;
+        public boolean enabled = true;
+        public String name = "default";
+        public Integer port;
+        public List<String> hosts = Arrays.asList("a", "b");
+        public transient int ignored = 5;
+    }
+
+    @Test
+    public void bindTest() throws IOException {
+        AIR parser = new AIR(new ByteArrayInputStream("[server]\n  ratio = 0.5\n  port = 25565\n  timeout = 5\n  ignored = 1\n".getBytes(StandardCharsets.UTF_8)));
+
+        Settings settings = parser.bind("server", Settings.class);
+        Assertions.assertEquals(4, settings.threads);
+        Assertions.assertEquals(5L, settings.timeout);
+        Assertions.assertEquals(0.5, settings.ratio);
+        Assertions.assertTrue(settings.enabled);
+        Assertions.assertEquals("default", settings.name);
+        Assertions.assertEquals(25565, settings.port);
+        Assertions.assertEquals(Arrays.asList("a", "b"), settings.hosts);
+        Assertions.assertEquals(5, settings.ignored);
+
+        // missing values are added with the field defaults
+        Assertions.assertEquals(4, parser.getInt("server.threads", 0));
+        Assertions.assertEquals(Arrays.asList("a", "b"), parser.getList("server.hosts", ValueType.STRING, null));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        parser.save(outputStream);
+        Assertions.assertEquals("[server]\n  ratio = 0.5\n  port = 25565\n  timeout = 5\n  ignored = 1\n  # how many workers to start\n  threads = 4\n" +
+                "  enabled = true\n  name = \"default\"\n  hosts = [\n    \"a\",\n    \"b\",\n  ]\n\n", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+
+        parser.reload(new ByteArrayInputStream(("[server]\n  # how many workers to start\n  threads = 8\n  timeout = 5\n  ratio = 0.5\n  enabled = false\n  name = \"x\"\n  port = 1\n" +
+                "  hosts = [\n    \"c\",\n  ]\n").getBytes(StandardCharsets.UTF_8)));
+        parser.bind("server", settings);
+        Assertions.assertEquals(8, settings.threads);
+        Assertions.assertFalse(settings.enabled);
+        Assertions.assertEquals(Collections.singletonList("c"), settings.hosts);
+
+        // storing unchanged fields does not mark anything as changed
+        Assertions.assertFalse(parser.isDirty());
+        parser.store("server", settings);
+        Assertions.assertFalse(parser.isDirty());
+        settings.threads = 16;
+        parser.store("server", settings);
+        Assertions.assertTrue(parser.isDirty());
+        Assertions.assertEquals(16, parser.getInt("server.threads", 0));
+    }
+
+    @Test
+    public void cacheTest() throws IOException {
+        File file = File.createTempFile("air", ".air");
+        file.deleteOnExit();
+        Path path = file.toPath();
+        Path cache = path.resolveSibling(path.getFileName() + ".bin");
+        cache.toFile().deleteOnExit();
+        String text = "# header\n[foo]\n  # a comment\n  bar = \"caf\u00e9\"\n  i = 1\n  l = 12345678901\n  d = 1.5\n  b = true\n" +
+                "  h = 0xff\n  list = [\n    1,\n    2.5,\n    \"x\",\n  ]\n\n";
+        Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+
+        AIR parsed = AIR.load(path, LoadOption.CACHE);
+        Assertions.assertTrue(Files.exists(cache));
+        AIR cached = AIR.load(path, LoadOption.CACHE);
+        Assertions.assertFalse(cached.isDirty());
+        Assertions.assertEquals(12345678901L, cached.getLong("foo.l", 0));
+        // registered types are cached as their text
+        Assertions.assertEquals(255, cached.get("foo.h", HEX, 0));
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        parsed.save(Channels.newChannel(expected));
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        cached.save(Channels.newChannel(actual));
+        Assertions.assertEquals(text, new String(actual.toByteArray(), StandardCharsets.UTF_8));
+        Assertions.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+
+        // touching the file keeps the cache, changing it replaces the cache
+        Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() - 10000));
+        Assertions.assertEquals(1, AIR.load(path, LoadOption.CACHE).getInt("foo.i", 0));
+        Files.write(path, "[foo]\n  i = 2\n".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(2, AIR.load(path, LoadOption.CACHE).getInt("foo.i", 0));
+        Assertions.assertEquals(2, AIR.load(path, LoadOption.CACHE).getInt("foo.i", 0));
+
+        // a change to the same size within the resolution of the modification time is still noticed
+        FileTime modified = Files.getLastModifiedTime(path);
+        Files.write(path, "[foo]\n  i = 3\n".getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(path, modified);
+        Assertions.assertEquals(3, AIR.load(path, LoadOption.CACHE).getInt("foo.i", 0));
+        Files.write(path, "[foo]\n  i = 2\n".getBytes(StandardCharsets.UTF_8));
+
+        // a broken cache is ignored
+        Files.write(cache, new byte[]{0x41, 0x49, 0x52, 0x42, 0, 0, 0, 1, 0});
+        Assertions.assertEquals(2, AIR.load(path, LoadOption.CACHE).getInt("foo.i", 0));
+
+        // a cache with a current header but corrupt contents is written again
+        byte[] corrupt = Files.readAllBytes(cache);
+        ByteBuffer.wrap(corrupt).putInt(33, -1);
+        Files.write(cache, corrupt);
+        Assertions.assertEquals(2, AIR.load(path, LoadOption.CACHE).getInt("foo.i", 0));
+        Assertions.assertFalse(Arrays.equals(corrupt, Files.readAllBytes(cache)));
+        ByteBuffer.wrap(corrupt).putInt(29, Integer.MAX_VALUE);
+        Files.write(cache, corrupt);
+        Assertions.assertEquals(2, AIR.load(path, LoadOption.CACHE).getInt("foo.i", 0));
+        Assertions.assertFalse(Arrays.equals(corrupt, Files.readAllBytes(cache)));
+    }
+
+    @Test
+    public void parallelLoadTest() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            if (i % 50 == 0) {
+                builder.append("# section ").append(i / 50).append("\r\n[section").append(i / 50).append("]\r\n");
+            }
+            builder.append("  # key ").append(i).append('\n');
+            builder.append("  key").append(i).append(i % 2 == 0 ? " = \"value\"\n" : " = [\n    1,\n    2.5,\n  ]\n");
+        }
+        byte[] contents = builder.toString().getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        AIR.load(ByteBuffer.wrap(contents)).save(Channels.newChannel(expected));
+        AIR parallel = AIR.load(ByteBuffer.wrap(contents), LoadOption.PARALLEL);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        parallel.save(Channels.newChannel(actual));
+        Assertions.assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        Assertions.assertEquals("value", parallel.getString("section199.key9998", null));
+
+        // errors are the same as those of a regular load
+        for (String broken : new String[]{"  broken = what\n", "  broken = 99999999999999999999\n"}) {
+            byte[] bytes = (builder + broken).getBytes(StandardCharsets.UTF_8);
+            Exception sequential = Assertions.assertThrows(Exception.class, () -> AIR.load(ByteBuffer.wrap(bytes)));
+            Exception failure = Assertions.assertThrows(Exception.class, () -> AIR.load(ByteBuffer.wrap(bytes), LoadOption.PARALLEL));
+            Assertions.assertEquals(sequential.getClass(), failure.getClass());
+            Assertions.assertEquals(sequential.getMessage(), failure.getMessage());
+        }
+    }
+
+    @Test
+    public void compactTest() throws IOException {
+        byte[] contents = ("# header\n[foo]\n  # a comment\n  name = \"value\"\n  other = \"value\"\n  i = 1\n" +
+                "  ints = [\n    1,\n    2,\n  ]\n  mixed = [\n    1,\n    \"a\",\n  ]\n  empty = [\n  ]\n").getBytes(StandardCharsets.UTF_8);
+        AIR first = AIR.load(ByteBuffer.wrap(contents), LoadOption.COMPACT);
+        AIR second = AIR.load(ByteBuffer.wrap(contents), LoadOption.COMPACT);
+
+        Assertions.assertEquals(1, first.getInt("foo.i", 0));
+        Assertions.assertSame(first.getString("foo.name", null), first.getString("foo.other", null));
+        Assertions.assertEquals(Arrays.asList(1, 2), first.getList("foo.ints", ValueType.INT, null));
+        Assertions.assertEquals(Arrays.asList(1L, 2L), second.getList("foo.ints", ValueType.LONG, null));
+        Assertions.assertEquals(Collections.emptyList(), first.getList("foo.empty", ValueType.STRING, null));
+        Assertions.assertThrows(IOException.class, () -> first.getList("foo.mixed", ValueType.INT, null));
+
+        // missing values are not added
+        Assertions.assertEquals(5, first.getInt("foo.missing", 5, "a comment"));
+        Assertions.assertEquals(6, first.getInt("foo.missing", 6));
+        Assertions.assertEquals(7, first.getInt("bar.missing", 7));
+        Assertions.assertFalse(first.isDirty());
+        Assertions.assertFalse(first.freeze().contains("foo.missing"));
+        Assertions.assertEquals(Arrays.asList(1, 2), first.snapshot().getList("foo.ints", ValueType.INT, null));
+
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> first.set(ValueType.INT, "foo.i", 2));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> first.key("foo.i", ValueType.INT, 0).set(2));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> first.save(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void typedListTest() throws IOException {
+        String contents = "[foo]\n  ints = [\n    1,\n    2,\n  ]\n  longs = [\n    1,\n    10000000000,\n  ]\n" +
+                "  doubles = [\n    1.5,\n  ]\n  strings = [\n    \"a\",\n    \"b\",\n  ]\n  empty = [\n  ]\n";
+        AIR air = new AIR(new ByteArrayInputStream(contents.getBytes()));
+
+        ImmutableArray.OfInt ints = air.getIntArray("foo.ints", new int[0]);
+        Assertions.assertArrayEquals(new int[]{1, 2}, ints.toArray());
+        Assertions.assertSame(ints, air.getIntArray("foo.ints", new int[0]));
+        Assertions.assertArrayEquals(new long[]{1, 2}, air.getLongArray("foo.ints", new long[0]).toArray());
+        Assertions.assertArrayEquals(new long[]{1, 10000000000L}, air.getLongArray("foo.longs", new long[0]).toArray());
+        Assertions.assertArrayEquals(new double[]{1.5}, air.getDoubleArray("foo.doubles", new double[0]).toArray());
+        Assertions.assertEquals(Arrays.asList("a", "b"), air.getStringList("foo.strings", Collections.emptyList()));
+        Assertions.assertTrue(air.getIntArray("foo.empty", new int[]{1}).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> air.getIntArray("foo.strings", new int[0]));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> air.getIntArray("foo.longs", new int[0]));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> air.getStringList("foo.strings", null).set(0, "c"));
+        Assertions.assertFalse(air.isDirty());
+
+        // reading a list of ints as longs leaves it a list of ints, and a failed read leaves it as it was
+        Assertions.assertEquals(Arrays.asList(1L, 2L), air.getList("foo.ints", ValueType.LONG, null));
+        Assertions.assertEquals(Arrays.asList(1, 2), air.getList("foo.ints", ValueType.INT, null));
+        Assertions.assertArrayEquals(new int[]{1, 2}, air.getIntArray("foo.ints", new int[0]).toArray());
+        Assertions.assertThrows(IOException.class, () -> air.getList("foo.longs", ValueType.INT, null));
+        Assertions.assertEquals(Arrays.asList(1L, 10000000000L), air.getList("foo.longs", ValueType.LONG, null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> air.getIntArray("foo.longs", new int[0]));
+        Assertions.assertFalse(air.isDirty());
+
+        // changing the list replaces the cached array
+        air.setList(ValueType.INT, "foo.ints", Arrays.asList(3, 4, 5));
+        Assertions.assertArrayEquals(new int[]{3, 4, 5}, air.getIntArray("foo.ints", new int[0]).toArray());
+        Assertions.assertEquals(Arrays.asList(3, 4, 5), air.getList("foo.ints", ValueType.INT, null));
+
+        Assertions.assertArrayEquals(new int[]{7, 8}, air.getIntArray("foo.missing", new int[]{7, 8}).toArray());
+        Assertions.assertEquals(Arrays.asList(7, 8), air.getList("foo.missing", ValueType.INT, null));
+
+        // saved the same way as lists read through getList
+        AIR other = new AIR(new ByteArrayInputStream(contents.getBytes()));
+        other.setList(ValueType.INT, "foo.ints", Arrays.asList(3, 4, 5));
+        other.getList("foo.missing", ValueType.INT, Arrays.asList(7, 8));
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        other.save(expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        air.save(actual);
+        Assertions.assertEquals(expected.toString(), actual.toString());
+
+        AIR compact = AIR.load(ByteBuffer.wrap(contents.getBytes()), LoadOption.COMPACT);
+        Assertions.assertArrayEquals(new int[]{1, 2}, compact.getIntArray("foo.ints", new int[0]).toArray());
+        Assertions.assertArrayEquals(new int[]{9}, compact.getIntArray("foo.missing", new int[]{9}).toArray());
+    }
+
+    @Test
+    public void editTest() throws IOException {
+        AIR air = AIR.load(ByteBuffer.wrap("[foo]\n  a = 1\n  b = \"x\"\n  c = [\n    1,\n  ]\n".getBytes(StandardCharsets.UTF_8)));
+        AIRSnapshot before = air.freeze();
+        List<AIRDiff> diffs = new ArrayList<>();
+        air.addListener(diffs::add);
+
+        AIRDiff diff = air.edit(tx -> tx
+                .set(ValueType.INT, "foo.a", 2)
+                .set(ValueType.INT, "foo.a", 3)
+                .set(ValueType.STRING, "foo.b", "x")
+                .setList(ValueType.INT, "foo.c", Arrays.asList(1, 2))
+                .set(ValueType.BOOL, "bar.d", true)
+                .setComment("bar", "new section"));
+        Assertions.assertEquals("[foo.a: 1 -> 3, foo.c: [1] -> [1, 2], bar.d: null -> true]", diff.toString());
+        Assertions.assertEquals(1, diffs.size());
+        Assertions.assertSame(diff, diffs.get(0));
+        Assertions.assertEquals(1, before.getInt("foo.a", 0));
+        Assertions.assertEquals(3, air.snapshot().getInt("foo.a", 0));
+        Assertions.assertTrue(air.snapshot().getBoolean("bar.d", false));
+        Assertions.assertSame(air.snapshot(), air.snapshot());
+        Assertions.assertTrue(air.isDirty());
+
+        // nothing is applied when any change fails
+        AIRSnapshot snapshot = air.snapshot();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> air.edit(tx -> tx
+                .set(ValueType.INT, "foo.a", 4)
+                .set(ValueType.INT, "foo.b", 5)));
+        Assertions.assertEquals(3, air.getInt("foo.a", 0));
+        Assertions.assertSame(snapshot, air.snapshot());
+        Assertions.assertEquals(1, diffs.size());
+
+        Assertions.assertThrows(NullPointerException.class, () -> air.edit(tx -> tx
+                .set(ValueType.INT, "foo.a", 4)
+                .setList(ValueType.INT, "foo.c", Arrays.asList(1, null))));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> air.edit(tx -> tx
+                .set(ValueType.INT, "foo.a", 4)
+                .set(ValueType.BOOL, "baz.e", true)
+                .set(ValueType.INT, "baz.e", 5)));
+        Assertions.assertEquals(3, air.getInt("foo.a", 0));
+        Assertions.assertFalse(air.snapshot().contains("baz.e"));
+        Assertions.assertEquals(1, diffs.size());
+
+        // batches without a visible change are still reported, as they leave the configuration to be saved
+        File file = File.createTempFile("air", ".air");
+        file.deleteOnExit();
+        air.save(file.toPath());
+        Assertions.assertTrue(air.edit(tx -> tx.setComment("foo", "about foo")).isEmpty());
+        Assertions.assertTrue(air.isDirty());
+        Assertions.assertEquals(2, diffs.size());
+        Assertions.assertTrue(air.edit(tx -> tx.set(ValueType.INT, "foo.a", 3)).isEmpty());
+        Assertions.assertEquals(3, diffs.size());
+        Assertions.assertTrue(air.edit(tx -> { }).isEmpty());
+        Assertions.assertEquals(3, diffs.size());
+    }
+
+    private static final ValueType<Integer> HEX = ValueType.register(new ValueType<Integer>("HEX") {
+        @Override
+        public Optional<Integer> apply(String str) {
+            if (str.startsWith("0x")) {
+                return Optional.of(Integer.parseInt(str.substring(2), 16));
+            }
+            return Optional.empty();
+        }
+
+        @Override
+        public String serialize(Integer value) {
+            return "0x" + Integer.toHexString(value);
+        }
+    }, '0');
+
+    @Test
+    public void valueTypeTest() throws IOException {
+        String contents = "[foo]\n  timeout = \"30s\"\n  size = \"64MB\"\n  pattern = \"a+b\"\n  mask = 0xff\n  zero = 0\n" +
+                "  bad = \"30 parsecs\"\n  waits = [\n    \"1m\",\n    \"PT2H\",\n  ]\n\n";
+        AIR air = new AIR(new ByteArrayInputStream(contents.getBytes()));
+
+        Duration timeout = air.getDuration("foo.timeout", Duration.ZERO);
+        Assertions.assertEquals(Duration.ofSeconds(30), timeout);
+        Assertions.assertSame(timeout, air.getDuration("foo.timeout", Duration.ZERO));
+        Assertions.assertEquals(64L << 20, air.getByteSize("foo.size", 0));
+        Pattern pattern = air.getPattern("foo.pattern", null);
+        Assertions.assertTrue(pattern.matcher("aab").matches());
+        Assertions.assertSame(pattern, air.getPattern("foo.pattern", null));
+        Assertions.assertEquals(255, air.get("foo.mask", HEX, 0));
+        Assertions.assertEquals(0, air.getInt("foo.zero", 1));
+        Assertions.assertEquals(Arrays.asList(Duration.ofMinutes(1), Duration.ofHours(2)), air.getList("foo.waits", ValueType.DURATION, null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> air.getDuration("foo.bad", Duration.ZERO));
+        Assertions.assertEquals("30s", air.getString("foo.timeout", null));
+        Assertions.assertFalse(air.isDirty());
+
+        // read values are saved as they were written
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        air.save(output);
+        Assertions.assertEquals(contents, output.toString());
+
+        Assertions.assertEquals(Duration.ofMillis(1500), air.getDuration("foo.missing", Duration.ofMillis(1500)));
+        Assertions.assertEquals(1L << 30, air.getByteSize("foo.missingSize", 1L << 30));
+        air.set(ValueType.DURATION, "foo.timeout", Duration.ofHours(48));
+        air.set(HEX, "foo.mask", 16);
+        output = new ByteArrayOutputStream();
+        air.save(output);
+        String saved = output.toString();
+        Assertions.assertTrue(saved.contains("timeout = \"2d\"\n"));
+        Assertions.assertTrue(saved.contains("mask = 0x10\n"));
+        Assertions.assertTrue(saved.contains("missing = \"1500ms\"\n"));
+        Assertions.assertTrue(saved.contains("missingSize = \"1GB\"\n"));
+
+        Assertions.assertSame(ValueType.DURATION, ValueType.byName("DURATION"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ValueType.register(new ValueType<String>("HEX") {
+            @Override
+            public Optional<String> apply(String str) {
+                return Optional.empty();
+            }
+
+            @Override
+            public String serialize(String value) {
+                return value;
+            }
+        }));
+    }
+
+    @Test
+    public void includeTest() throws IOException {
+        Path directory = Files.createTempDirectory("air");
+        Path main = directory.resolve("main.air");
+        Path db = directory.resolve("db.air");
+        Path cache = directory.resolve("cache.air");
+        Files.write(main, "[_head]\n  include = [\n    \"db.air\",\n    \"cache.air\",\n  ]\n\n[app]\n  name = \"test\"\n\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(db, "# database settings\n[_head]\n\n[db]\n  url = \"jdbc:test\"\n  pool = 4\n\n".getBytes(StandardCharsets.UTF_8));
+        String cacheContents = "[cache]\n  size = \"64MB\"\n\n";
+        Files.write(cache, cacheContents.getBytes(StandardCharsets.UTF_8));
+        FileTime cacheModified = FileTime.fromMillis(1000);
+        Files.setLastModifiedTime(cache, cacheModified);
+
+        CountingMetrics metrics = new CountingMetrics();
+        AIR air = AIR.load(main, metrics);
+        Assertions.assertEquals(Arrays.asList(db.toAbsolutePath(), cache.toAbsolutePath()), air.getIncludes());
+        Assertions.assertEquals(3, metrics.getParseCount());
+        Assertions.assertEquals("jdbc:test", air.getString("db.url", null));
+        Assertions.assertEquals(64L << 20, air.getByteSize("cache.size", 0));
+
+        // unchanged fragments are copied instead of parsed again
+        AIR again = AIR.load(main, metrics);
+        Assertions.assertEquals(4, metrics.getParseCount());
+        again.set(ValueType.INT, "db.pool", 5);
+        Assertions.assertEquals(4, air.getInt("db.pool", 0));
+
+        // values are written back to the file they came from, new sections go to the including file
+        air.set(ValueType.INT, "db.pool", 8);
+        air.getString("other.value", "new");
+        Assertions.assertTrue(air.save(main));
+        Assertions.assertEquals("# database settings\n[_head]\n\n[db]\n  url = \"jdbc:test\"\n  pool = 8\n\n",
+                new String(Files.readAllBytes(db), StandardCharsets.UTF_8));
+        Assertions.assertEquals(cacheModified, Files.getLastModifiedTime(cache));
+        String saved = new String(Files.readAllBytes(main), StandardCharsets.UTF_8);
+        Assertions.assertTrue(saved.contains("[other]\n  value = \"new\"\n"));
+        Assertions.assertFalse(saved.contains("[db]"));
+        Assertions.assertFalse(air.save(main));
+
+        AIR reloaded = AIR.load(main, metrics);
+        Assertions.assertEquals(6, metrics.getParseCount());
+        Assertions.assertEquals(8, reloaded.getInt("db.pool", 0));
+        Assertions.assertEquals("new", reloaded.getString("other.value", null));
+
+        // the parsed fragments are dropped along with the configurations that included them
+        air = null;
+        again = null;
+        reloaded = null;
+        System.gc();
+        AIR.load(main, metrics);
+        Assertions.assertEquals(9, metrics.getParseCount());
+
+        Files.write(cache, "[db]\n  url = \"other\"\n".getBytes(StandardCharsets.UTF_8));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> AIR.load(main));
+    }
 }
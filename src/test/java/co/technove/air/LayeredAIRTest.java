@@ -0,0 +1,88 @@
+package co.technove.air;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+
+public class LayeredAIRTest {
+    private static AIR air(String contents) throws IOException {
+        return new AIR(new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void precedenceTest() throws IOException {
+        AIR defaults = air("[server]\nthreads = 4\nname = \"default\"\nratio = 0.5\n[client]\nretries = 3\n");
+        AIR cluster = air("[server]\nthreads = 8\nids = [\n  1,\n  2,\n]\n");
+        AIR node = air("[server]\nname = \"node\"\n");
+        LayeredAIR layered = new LayeredAIR(defaults, cluster, node);
+
+        Assertions.assertEquals(8, layered.getInt("server.threads", 0));
+        Assertions.assertEquals(8L, layered.getLong("server.threads", 0));
+        Assertions.assertEquals("node", layered.getString("server.name", null));
+        Assertions.assertEquals(0.5, layered.getDouble("server.ratio", 0));
+        Assertions.assertEquals(3, layered.getInt("client.retries", 0));
+        Assertions.assertEquals(Arrays.asList(1, 2), layered.getList("server.ids", ValueType.INT, null));
+        Assertions.assertEquals(7, layered.getInt("server.missing", 7));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> layered.getInt("server.name", 0));
+        Assertions.assertEquals(1, layered.layerOf("server.threads"));
+        Assertions.assertEquals(-1, layered.layerOf("server.missing"));
+        Assertions.assertEquals(5, layered.getKeys().size());
+
+        // writes go to the top layer
+        layered.set(ValueType.INT, "client.retries", 5);
+        Assertions.assertEquals(5, layered.getInt("client.retries", 0));
+        Assertions.assertEquals(2, layered.layerOf("client.retries"));
+        Assertions.assertEquals(5, node.getInt("client.retries", 0));
+        Assertions.assertEquals(3, defaults.getInt("client.retries", 0));
+        Assertions.assertTrue(node.isDirty());
+    }
+
+    @Test
+    public void conversionTest() throws IOException {
+        AIR defaults = air("[server]\ntimeout = \"30s\"\nsize = \"64MB\"\npattern = \"a+b\"\nthreads = 4\n");
+        LayeredAIR layered = new LayeredAIR(defaults, air(""));
+
+        Assertions.assertEquals(Duration.ofSeconds(30), layered.get("server.timeout", ValueType.DURATION, null));
+        Assertions.assertEquals(64L << 20, (long) layered.get("server.size", ValueType.BYTE_SIZE, 0L));
+        Assertions.assertTrue(layered.get("server.pattern", ValueType.PATTERN, null).matcher("aab").matches());
+        Assertions.assertEquals(4L, (long) layered.get("server.threads", ValueType.LONG, 0L));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> layered.get("server.threads", ValueType.DURATION, null));
+        // the layer keeps its values as they were
+        Assertions.assertEquals("30s", defaults.getString("server.timeout", null));
+        Assertions.assertEquals(4, defaults.getInt("server.threads", 0));
+
+        // reading a layer directly as another type replaces its node, which the index follows
+        Assertions.assertEquals(Duration.ofSeconds(30), defaults.getDuration("server.timeout", Duration.ZERO));
+        defaults.set(ValueType.DURATION, "server.timeout", Duration.ofMinutes(1));
+        Assertions.assertEquals(Duration.ofMinutes(1), layered.get("server.timeout", ValueType.DURATION, null));
+        defaults.set(ValueType.LONG, "server.threads", 1L << 40);
+        Assertions.assertEquals(1L << 40, layered.getLong("server.threads", 0));
+        Assertions.assertEquals(0, layered.layerOf("server.threads"));
+    }
+
+    @Test
+    public void reloadTest() throws IOException {
+        AIR defaults = air("[server]\nthreads = 4\nname = \"default\"\n");
+        AIR node = air("[server]\nthreads = 16\n");
+        LayeredAIR layered = new LayeredAIR(defaults, node);
+        Assertions.assertEquals(16, layered.getInt("server.threads", 0));
+
+        // keys that are gone from a layer fall through to the ones below
+        layered.reload(1, new ByteArrayInputStream("[server]\nname = \"node\"\n".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(4, layered.getInt("server.threads", 0));
+        Assertions.assertEquals("node", layered.getString("server.name", null));
+
+        layered.reload(0, new ByteArrayInputStream("[server]\nthreads = 2\n".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertEquals(2, layered.getInt("server.threads", 0));
+        Assertions.assertEquals("node", layered.getString("server.name", null));
+
+        layered.reload(1, new ByteArrayInputStream("[other]\nkey = 1\n".getBytes(StandardCharsets.UTF_8)));
+        Assertions.assertFalse(layered.contains("server.name"));
+        Assertions.assertEquals(1, layered.getInt("other.key", 0));
+    }
+}